@@ -65,20 +65,20 @@ public class CyclingPortalTestApp {
             portal1.createRace("Joinville_tourney", "test");
             portal2.createRace("Devon_loop", "Journey around the county of Devon");
             portal1.createRace("Assburn_hills", "Cycle through the Swedish Highlands of Assburn");
-            //Should print "0 2"
+            //each portal numbers its races from 0. Should print "0 1"
             for (int i = 0; i < portal1.getRaceIds().length; i++) {System.out.print(portal1.getRaceIds()[i] + " ");}
             System.out.println("");
 
-			//should print 1
+			//should print 0
 			for (int i = 0; i < portal2.getRaceIds().length; i++) {System.out.print(portal2.getRaceIds()[i] + " ");}
             System.out.println("");
 
             //creates and adds 3 stages to the race with id 1
             portal1.addStageToRace(0, "exe_to_exm", "11 miles from exeter to exmouth", 17.70, LocalDateTime.of(2024, 3, 3, 7, 30), StageType.MEDIUM_MOUNTAIN);
-            portal1.addStageToRace(2, "exm_to_sdm", "13.9 miles from exmouth to sidmouth", 22.37, LocalDateTime.of(2024, 3, 4, 6, 30), StageType.FLAT);
-            portal1.addStageToRace(2, "sdm_to_sen", "10 miles from sidmouth to seaton", 16.09, LocalDateTime.of(2024, 3, 5, 8, 0), StageType.FLAT);
+            portal1.addStageToRace(1, "exm_to_sdm", "13.9 miles from exmouth to sidmouth", 22.37, LocalDateTime.of(2024, 3, 4, 6, 30), StageType.FLAT);
+            portal1.addStageToRace(1, "sdm_to_sen", "10 miles from sidmouth to seaton", 16.09, LocalDateTime.of(2024, 3, 5, 8, 0), StageType.FLAT);
             //Should print "1 2"
-            for (int i = 0; i < portal1.getNumberOfStages(2); i++) {System.out.print(portal1.getRaceStages(2)[i] + " ");}
+            for (int i = 0; i < portal1.getNumberOfStages(1); i++) {System.out.print(portal1.getRaceStages(1)[i] + " ");}
             System.out.println("");
 
             //creates and adds 2 checkpoints to the stage with id 0. This stage resides in the race with id 1
@@ -97,12 +97,12 @@ public class CyclingPortalTestApp {
             System.out.println("");
 
 			//should print "Cycle through the swedish highlands of Assburn"
-            System.out.println(portal1.viewRaceDetails(2));
+            System.out.println(portal1.viewRaceDetails(1));
 
             System.out.println("Stage id 2 length: " + portal1.getStageLength(2));
 
-            //removes the race with id 2
-            portal1.removeRaceById(2);
+            //removes the race with id 1
+            portal1.removeRaceById(1);
             //should print "0"
             for (int i = 0; i < portal1.getRaceIds().length; i++) {System.out.print(portal1.getRaceIds()[i] + " ");}
             System.out.println("");
@@ -165,19 +165,19 @@ public class CyclingPortalTestApp {
             System.out.println(Arrays.toString(portal1.getRidersRankInStage(3)));
 
             portal2.createTeam("teamTwo", "everybody hates them");
-            portal2.createRider(2, "Jason_cummings", 1999);
-            portal2.createRider(2, "amba_singh", 1987);
-            portal2.addStageToRace(1, "hell", "we just wanna see this team suffer", 50.00, LocalDateTime.of(2025, 4, 5, 9, 0), StageType.HIGH_MOUNTAIN);
-            portal2.addCategorizedClimbToStage(4, 10.00, CheckpointType.HC, 20.00, 5.00);
-            portal2.addCategorizedClimbToStage(4, 20.00, CheckpointType.HC, 20.00, 5.00);
-            portal2.addCategorizedClimbToStage(4, 33.00, CheckpointType.HC, 20.00, 5.00);
-            portal2.concludeStagePreparation(4);
-            portal2.registerRiderResultsInStage(4, 3, LocalTime.of(11, 03, 12), LocalTime.of(13, 57, 38), LocalTime.of(16, 27, 54), LocalTime.of(21, 14, 30), LocalTime.of(23, 7, 28));
-            portal2.registerRiderResultsInStage(4, 4, LocalTime.of(11, 03, 12), LocalTime.of(14, 57, 38), LocalTime.of(15, 03, 2), LocalTime.of(22, 14, 30), LocalTime.of(23, 58, 28));
-            System.out.println(Arrays.toString(portal2.getRidersRankInStage(4)));
-            System.out.println(Arrays.toString(portal2.getRidersPointsInStage(4)));
-            System.out.println(Arrays.toString(portal2.getRidersMountainPointsInStage(4)));
-            portal2.removeTeam(2);
+            portal2.createRider(1, "Jason_cummings", 1999);
+            portal2.createRider(1, "amba_singh", 1987);
+            portal2.addStageToRace(0, "hell", "we just wanna see this team suffer", 50.00, LocalDateTime.of(2025, 4, 5, 9, 0), StageType.HIGH_MOUNTAIN);
+            portal2.addCategorizedClimbToStage(0, 10.00, CheckpointType.HC, 20.00, 5.00);
+            portal2.addCategorizedClimbToStage(0, 20.00, CheckpointType.HC, 20.00, 5.00);
+            portal2.addCategorizedClimbToStage(0, 33.00, CheckpointType.HC, 20.00, 5.00);
+            portal2.concludeStagePreparation(0);
+            portal2.registerRiderResultsInStage(0, 0, LocalTime.of(11, 03, 12), LocalTime.of(13, 57, 38), LocalTime.of(16, 27, 54), LocalTime.of(21, 14, 30), LocalTime.of(23, 7, 28));
+            portal2.registerRiderResultsInStage(0, 1, LocalTime.of(11, 03, 12), LocalTime.of(14, 57, 38), LocalTime.of(15, 03, 2), LocalTime.of(22, 14, 30), LocalTime.of(23, 58, 28));
+            System.out.println(Arrays.toString(portal2.getRidersRankInStage(0)));
+            System.out.println(Arrays.toString(portal2.getRidersPointsInStage(0)));
+            System.out.println(Arrays.toString(portal2.getRidersMountainPointsInStage(0)));
+            portal2.removeTeam(1);
 
             System.out.println(Arrays.toString(portal1.getRiderResultsInStage(0, 2)));
 
@@ -0,0 +1,75 @@
+package cycling.benchmark;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cycling.ConcurrentCyclingPortal;
+
+/**
+ * Benchmarks ConcurrentCyclingPortal with several threads, each registering and then deleting the full finish list
+ * of its own stage, while the portal is read in between. Run with -t to change the number of threads;
+ * as the threads write to different stages, the throughput should grow with them.
+ * @author Aria Noroozi
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConcurrentRegistrationBenchmark extends PortalBenchmarkState {
+    private ConcurrentCyclingPortal portal;
+    private int[] stageIds;
+    private int[] riderIds;
+    private LocalTime[][] finishList;
+    //hands each thread its own stage
+    private final AtomicInteger nextStage = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class ThreadStage {
+        private int stageId;
+
+        @Setup(Level.Trial)
+        public void setUp(ConcurrentRegistrationBenchmark benchmark) {
+            stageId = benchmark.stageIds[benchmark.nextStage.getAndIncrement() % benchmark.stageIds.length];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        PortalDataGenerator generator = newGenerator();
+        portal = generator.build(new ConcurrentCyclingPortal(), false);
+        stageIds = generator.getStageIds();
+        riderIds = generator.getRiderIds();
+        finishList = new LocalTime[riderIds.length][];
+        for (int i = 0; i < riderIds.length; i++) {
+            finishList[i] = generator.randomTimes();
+        }
+    }
+
+    @Benchmark
+    public int[] registerAndDeleteFinishList(ThreadStage thread) throws Exception {
+        for (int i = 0; i < riderIds.length; i++) {
+            portal.registerRiderResultsInStage(thread.stageId, riderIds[i], finishList[i]);
+        }
+        int[] ranking = portal.getRidersRankInStage(thread.stageId);
+        for (int riderId : riderIds) {
+            portal.deleteRiderResultsInStage(thread.stageId, riderId);
+        }
+        return ranking;
+    }
+}
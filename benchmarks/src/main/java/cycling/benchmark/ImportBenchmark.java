@@ -0,0 +1,70 @@
+package cycling.benchmark;
+
+import java.io.StringReader;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cycling.CyclingPortalImpl;
+import cycling.PortalImporter;
+
+/**
+ * Benchmarks importing the full finish list of one stage from a CSV file held in memory,
+ * one row for each of teams x ridersPerTeam riders. Every other stage of the portal already holds results.
+ * The results are deleted again before each call, outside of the measured time.
+ * Dividing the rows by the time per call gives the importer's throughput in rows per second.
+ * @author Aria Noroozi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImportBenchmark extends PortalBenchmarkState {
+    private CyclingPortalImpl portal;
+    private PortalImporter importer;
+    private int stageId;
+    private int[] riderIds;
+    private String csv;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        PortalDataGenerator generator = newGenerator();
+        portal = generator.build(true);
+        importer = new PortalImporter(portal, ',', true);
+        int[] stageIds = generator.getStageIds();
+        stageId = stageIds[stageIds.length / 2];
+        riderIds = generator.getRiderIds();
+
+        StringBuilder file = new StringBuilder("stage,rider,times\n");
+        for (int riderId : riderIds) {
+            file.append(stageId).append(',').append(riderId);
+            for (LocalTime time : generator.randomTimes()) {
+                file.append(',').append(time);
+            }
+            file.append('\n');
+        }
+        csv = file.toString();
+    }
+
+    @Setup(Level.Invocation)
+    public void clearStage() throws Exception {
+        for (int riderId : riderIds) {
+            portal.deleteRiderResultsInStage(stageId, riderId);
+        }
+    }
+
+    @Benchmark
+    public PortalImporter.Report importStageResults() throws Exception {
+        return importer.importStageResults(new StringReader(csv));
+    }
+}
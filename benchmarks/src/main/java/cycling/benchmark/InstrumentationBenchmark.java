@@ -0,0 +1,61 @@
+package cycling.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cycling.CyclingPortalImpl;
+import cycling.IDNotRecognisedException;
+import cycling.InstrumentedCyclingPortal;
+
+/**
+ * Benchmarks the cost of recording a call, by making the same cheap call straight to a portal and through an
+ * InstrumentedCyclingPortal wrapped around it. The difference between the two is the time spent recording.
+ * A call with an unknown id is measured too, as recording an exception takes a little more.
+ * @author Aria Noroozi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentationBenchmark extends PortalBenchmarkState {
+    private CyclingPortalImpl portal;
+    private InstrumentedCyclingPortal instrumented;
+    private int raceId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        PortalDataGenerator generator = newGenerator();
+        portal = generator.build(false);
+        instrumented = new InstrumentedCyclingPortal(portal);
+        raceId = portal.getRaceIds()[0];
+    }
+
+    @Benchmark
+    public int direct() throws IDNotRecognisedException {
+        return portal.getNumberOfStages(raceId);
+    }
+
+    @Benchmark
+    public int instrumented() throws IDNotRecognisedException {
+        return instrumented.getNumberOfStages(raceId);
+    }
+
+    @Benchmark
+    public int instrumentedUnknownId() {
+        try {
+            return instrumented.getNumberOfStages(-1);
+        } catch (IDNotRecognisedException e) {
+            return -1;
+        }
+    }
+}
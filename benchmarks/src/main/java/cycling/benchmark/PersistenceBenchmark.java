@@ -0,0 +1,72 @@
+package cycling.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cycling.CyclingPortalImpl;
+import cycling.IDNotRecognisedException;
+import cycling.MappedPortalArchive;
+
+/**
+ * Benchmarks saveCyclingPortal and loadCyclingPortal on a portal where every rider has a result in every stage.
+ * Both write to and read from a temporary file, so the numbers include the file system.
+ * Opening the same file as a MappedPortalArchive, and answering one stage query from it, is measured alongside for comparison.
+ * @author Aria Noroozi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark extends PortalBenchmarkState {
+    private CyclingPortalImpl portal;
+    private CyclingPortalImpl loadedPortal;
+    private File saveFile;
+    private File loadFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        portal = newGenerator().build(true);
+        saveFile = File.createTempFile("portal-save", ".snap");
+        loadFile = File.createTempFile("portal-load", ".snap");
+        portal.saveCyclingPortal(loadFile.getPath());
+        loadedPortal = new CyclingPortalImpl();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        saveFile.delete();
+        loadFile.delete();
+    }
+
+    @Benchmark
+    public void saveCyclingPortal() throws IOException {
+        portal.saveCyclingPortal(saveFile.getPath());
+    }
+
+    @Benchmark
+    public CyclingPortalImpl loadCyclingPortal() throws IOException, ClassNotFoundException {
+        loadedPortal.loadCyclingPortal(loadFile.getPath());
+        return loadedPortal;
+    }
+
+    @Benchmark
+    public int[] openMappedArchive() throws IOException, IDNotRecognisedException {
+        try (MappedPortalArchive archive = new MappedPortalArchive(loadFile.getPath())) {
+            int[] stageIds = archive.getRaceStages(archive.getRaceIds()[0]);
+            return archive.getRidersRankInStage(stageIds[0]);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package cycling.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The size of the generated portal, shared by every benchmark.
+ * Each parameter can be overridden from the command line with -p, e.g. -p ridersPerTeam=4,8,16,32
+ * to draw a scaling curve over the number of riders.
+ * @author Aria Noroozi
+ */
+@State(Scope.Benchmark)
+public abstract class PortalBenchmarkState {
+    @Param({"1"})
+    public int races;
+
+    @Param({"21"})
+    public int stagesPerRace;
+
+    @Param({"5"})
+    public int checkpointsPerStage;
+
+    @Param({"22"})
+    public int teams;
+
+    @Param({"8"})
+    public int ridersPerTeam;
+
+    //the same seed is used everywhere so runs can be compared with each other
+    protected static final long SEED = 42;
+
+    protected PortalDataGenerator newGenerator() {
+        return new PortalDataGenerator(races, stagesPerRace, checkpointsPerStage, teams, ridersPerTeam, SEED);
+    }
+}
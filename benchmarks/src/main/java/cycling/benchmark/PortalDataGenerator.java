@@ -0,0 +1,124 @@
+package cycling.benchmark;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Random;
+
+import cycling.CheckpointType;
+import cycling.CyclingPortalImpl;
+import cycling.StageType;
+
+/**
+ * Builds synthetic portals for the benchmarks.
+ * A generated portal has a number of races, each with the same number of stages and checkpoints per stage,
+ * and a number of teams, each with the same number of riders. Times are drawn from a seeded random generator,
+ * so the same parameters always produce the same portal.
+ * @author Aria Noroozi
+ */
+public class PortalDataGenerator {
+    //every stage starts at this time of day, finish times are spread over the hours after it
+    private static final LocalTime START_TIME = LocalTime.of(9, 0);
+
+    private final int races;
+    private final int stagesPerRace;
+    private final int checkpointsPerStage;
+    private final int teams;
+    private final int ridersPerTeam;
+    private final Random random;
+
+    //filled in by build, so benchmarks can address the generated entities
+    private int[] stageIds;
+    private int[] riderIds;
+
+    public PortalDataGenerator(int races, int stagesPerRace, int checkpointsPerStage, int teams, int ridersPerTeam, long seed) {
+        this.races = races;
+        this.stagesPerRace = stagesPerRace;
+        this.checkpointsPerStage = checkpointsPerStage;
+        this.teams = teams;
+        this.ridersPerTeam = ridersPerTeam;
+        this.random = new Random(seed);
+    }
+
+    //get methods, valid once build has been called
+    public int[] getStageIds() {return stageIds;}
+    public int[] getRiderIds() {return riderIds;}
+
+    /**
+     * creates a portal with every race, stage, checkpoint, team and rider, with all stages waiting for results
+     * @param withResults whether every rider should also have a result registered in every stage
+     * @return the generated portal
+    */
+    public CyclingPortalImpl build(boolean withResults) throws Exception {
+        return build(new CyclingPortalImpl(), withResults);
+    }
+
+    /**
+     * fills the given portal the same way as build(withResults), for benchmarks of other portal classes
+     * @param portal an empty portal, which is erased first
+     * @param withResults whether every rider should also have a result registered in every stage
+     * @return the same portal
+    */
+    public <P extends CyclingPortalImpl> P build(P portal, boolean withResults) throws Exception {
+        //the portal's id sequences start from 0 again, so the ids are the same every time
+        portal.eraseCyclingPortal();
+
+        riderIds = new int[teams * ridersPerTeam];
+        for (int t = 0; t < teams; t++) {
+            int teamId = portal.createTeam("Team" + t, "Generated team");
+            for (int r = 0; r < ridersPerTeam; r++) {
+                riderIds[t * ridersPerTeam + r] = portal.createRider(teamId, "Rider" + t + "_" + r, 1980 + random.nextInt(25));
+            }
+        }
+
+        stageIds = new int[races * stagesPerRace];
+        for (int race = 0; race < races; race++) {
+            int raceId = portal.createRace("Race" + race, "Generated race");
+            for (int s = 0; s < stagesPerRace; s++) {
+                //time trials cannot have checkpoints, so only road stage types are used
+                StageType type = StageType.values()[random.nextInt(3)];
+                double length = 100 + checkpointsPerStage * 10;
+                int stageId = portal.addStageToRace(raceId, "Stage" + s, "Generated stage", length,
+                        LocalDateTime.of(2024, 7, 1 + s % 28, START_TIME.getHour(), 0), type);
+                for (int c = 0; c < checkpointsPerStage; c++) {
+                    double location = (c + 1) * 10.0;
+                    if (c % 2 == 0) {
+                        portal.addIntermediateSprintToStage(stageId, location);
+                    }
+                    else {
+                        CheckpointType climb = CheckpointType.values()[1 + random.nextInt(5)];
+                        portal.addCategorizedClimbToStage(stageId, location, climb, 6.0, 5.0);
+                    }
+                }
+                portal.concludeStagePreparation(stageId);
+                stageIds[race * stagesPerRace + s] = stageId;
+            }
+        }
+
+        if (withResults) {
+            for (int stageId : stageIds) {
+                for (int riderId : riderIds) {
+                    portal.registerRiderResultsInStage(stageId, riderId, randomTimes());
+                }
+            }
+        }
+        return portal;
+    }
+
+    /**
+     * draws a set of increasing checkpoint times for one rider in a stage,
+     * starting with the start time and ending with the finish time
+     * @return checkpointsPerStage + 2 times
+    */
+    public LocalTime[] randomTimes() {
+        LocalTime[] times = new LocalTime[checkpointsPerStage + 2];
+        times[0] = START_TIME;
+        long seconds = 0;
+        //the last leg always ends within the same day
+        long legSeconds = (13 * 3600) / (checkpointsPerStage + 1);
+        for (int i = 1; i < times.length; i++) {
+            seconds += legSeconds / 2 + random.nextInt((int) (legSeconds / 2));
+            times[i] = START_TIME.plusSeconds(seconds);
+        }
+        return times;
+    }
+}
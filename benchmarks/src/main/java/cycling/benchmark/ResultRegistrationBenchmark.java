@@ -0,0 +1,74 @@
+package cycling.benchmark;
+
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cycling.CyclingPortalImpl;
+
+/**
+ * Benchmarks registering the full finish list of one stage per call, i.e. one result for each of
+ * teams x ridersPerTeam riders, either one registerRiderResultsInStage call per rider or as a single
+ * registerStageResultsBatch. Every other stage of the portal already holds results.
+ * The results are deleted again before each call, outside of the measured time.
+ * @author Aria Noroozi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultRegistrationBenchmark extends PortalBenchmarkState {
+    private CyclingPortalImpl portal;
+    private int stageId;
+    private int[] riderIds;
+    private LocalTime[][] finishList;
+    private Map<Integer, LocalTime[]> finishBatch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        PortalDataGenerator generator = newGenerator();
+        portal = generator.build(true);
+        int[] stageIds = generator.getStageIds();
+        stageId = stageIds[stageIds.length / 2];
+        riderIds = generator.getRiderIds();
+        finishList = new LocalTime[riderIds.length][];
+        for (int i = 0; i < riderIds.length; i++) {
+            finishList[i] = generator.randomTimes();
+        }
+        finishBatch = new LinkedHashMap<>();
+        for (int i = 0; i < riderIds.length; i++) {
+            finishBatch.put(riderIds[i], finishList[i]);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void clearStage() throws Exception {
+        for (int riderId : riderIds) {
+            portal.deleteRiderResultsInStage(stageId, riderId);
+        }
+    }
+
+    @Benchmark
+    public void registerStageFinishList() throws Exception {
+        for (int i = 0; i < riderIds.length; i++) {
+            portal.registerRiderResultsInStage(stageId, riderIds[i], finishList[i]);
+        }
+    }
+
+    @Benchmark
+    public void registerStageResultsBatch() throws Exception {
+        portal.registerStageResultsBatch(stageId, finishBatch);
+    }
+}
@@ -0,0 +1,61 @@
+package cycling.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cycling.CyclingPortalImpl;
+import cycling.IDNotRecognisedException;
+
+/**
+ * Benchmarks the stage ranking and points queries on a portal where every rider has a result in every stage.
+ * Each call queries the next stage in turn, so the whole dataset is touched rather than one stage staying hot.
+ * @author Aria Noroozi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageQueryBenchmark extends PortalBenchmarkState {
+    private CyclingPortalImpl portal;
+    private int[] stageIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        PortalDataGenerator generator = newGenerator();
+        portal = generator.build(true);
+        stageIds = generator.getStageIds();
+    }
+
+    //the stage to query on this call
+    private int nextStage() {
+        int stageId = stageIds[next];
+        next = (next + 1) % stageIds.length;
+        return stageId;
+    }
+
+    @Benchmark
+    public int[] getRidersRankInStage() throws IDNotRecognisedException {
+        return portal.getRidersRankInStage(nextStage());
+    }
+
+    @Benchmark
+    public int[] getRidersPointsInStage() throws IDNotRecognisedException {
+        return portal.getRidersPointsInStage(nextStage());
+    }
+
+    @Benchmark
+    public int[] getRidersMountainPointsInStage() throws IDNotRecognisedException {
+        return portal.getRidersMountainPointsInStage(nextStage());
+    }
+}
@@ -13,9 +13,6 @@ public class Checkpoint implements java.io.Serializable {
     private double length;
     private int checkpointId;
 
-    //static attribute that increments with each checkpoint created; it is then assigned to the checkpoint as its unique id
-    private static int i = 0;
-
     //get methods
     public int getStageID() {return stageID;}
     public double getLocation() {return location;}
@@ -32,17 +29,14 @@ public class Checkpoint implements java.io.Serializable {
     public void setLength(int length) {this.length = length;}
     public void setCheckpointId(int checkpointId) {this.checkpointId = checkpointId;}
 
-    //Called when the portal is erased, so that ids can start from 0 again.
-    public static void reset() {i = 0;};
-
-    //Constructor
-    public Checkpoint(int stageID, Double location, CheckpointType type, Double averageGradient, Double length) {
+    //Constructor, the id comes from the portal's id sequences
+    public Checkpoint(int checkpointId, int stageID, Double location, CheckpointType type, Double averageGradient, Double length) {
+        this.checkpointId = checkpointId;
         this.stageID = stageID;
         this.location = location;
         this.type = type;
         this.averageGradient = averageGradient;
         this.length = length;
-        this.checkpointId = i++;
     }
 
 }
@@ -0,0 +1,142 @@
+package cycling;
+
+/**
+ * ClimbScorer class, working out the mountain points riders earn on the climbs of a stage.
+ * Only the first few riders over a climb score (at most 8, for an HC climb), so rather than sorting every rider
+ * by their time at each climb, the fastest k are picked out with a bounded heap in O(R log k).
+ * The points are added up per entry of the columns of times, so no rider id is ever boxed.
+ * @author Aria Noroozi
+ */
+public class ClimbScorer {
+    /**
+     * Times interface, the columns of checkpoint times a scorer reads. An entry is a slot of a live stage's result columns,
+     * or a rank of a stage in an archive
+     */
+    interface Times {
+        //the first entry holding a result from the given entry onwards, or -1 if there are none
+        int nextEntry(int fromEntry);
+        long getCheckpointTimeAt(int checkpoint, int entry);
+        int getRiderId(int entry);
+    }
+
+    private ClimbScorer() {}
+
+    /**
+     * scores every climb of a stage
+     * @param results the stage's results
+     * @param checkpoints the stage's checkpoints, in order of location
+     * @return the mountain points of each slot of the result columns. Slots without a result hold 0
+    */
+    public static int[] scoreSlots(StageResults results, Checkpoint[] checkpoints) {
+        CheckpointType[] types = new CheckpointType[results.getNumberOfCheckpoints()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = checkpoints[i].getType();
+        }
+        return score(new Times() {
+            @Override
+            public int nextEntry(int fromEntry) {return results.nextSlot(fromEntry);}
+            @Override
+            public long getCheckpointTimeAt(int checkpoint, int entry) {return results.getCheckpointTimeAt(checkpoint, entry);}
+            @Override
+            public int getRiderId(int entry) {return results.getRiderId(entry);}
+        }, results.getSlotCapacity(), types);
+    }
+
+    /**
+     * scores every climb of a stage from its columns of times
+     * @param times the checkpoint times, one column per checkpoint
+     * @param entries one more than the highest entry that can hold a result
+     * @param types the type of each checkpoint, in order of location
+     * @return the mountain points of each entry. Entries without a result hold 0
+    */
+    static int[] score(Times times, int entries, CheckpointType[] types) {
+        int[] entryPoints = new int[entries];
+        //reused for every climb, no climb scores more than 8 riders
+        int[] heap = new int[8];
+
+        for (int checkpoint = 0; checkpoint < types.length; checkpoint++) {
+            CheckpointType type = types[checkpoint];
+            int k = type.getCheckPointType().length;
+            if (k == 0) {
+                continue;
+            }
+            if (heap.length < k) {
+                heap = new int[k];
+            }
+
+            //the heap holds the k fastest entries so far, with the slowest of them at the top
+            int size = 0;
+            for (int entry = times.nextEntry(0); entry >= 0; entry = times.nextEntry(entry + 1)) {
+                if (size < k) {
+                    heap[size] = entry;
+                    siftUp(times, checkpoint, heap, size);
+                    size++;
+                }
+                else if (faster(times, checkpoint, entry, heap[0])) {
+                    heap[0] = entry;
+                    siftDown(times, checkpoint, heap, size);
+                }
+            }
+
+            //the few entries left are put in order, fastest first, and given the checkpoint's points
+            for (int i = 1; i < size; i++) {
+                int entry = heap[i];
+                int j = i - 1;
+                while (j >= 0 && faster(times, checkpoint, entry, heap[j])) {
+                    heap[j + 1] = heap[j];
+                    j--;
+                }
+                heap[j + 1] = entry;
+            }
+            for (int i = 0; i < size; i++) {
+                entryPoints[heap[i]] += type.getPoints(i);
+            }
+        }
+        return entryPoints;
+    }
+
+    //orders entries by their time at the checkpoint. Equal times go to the lower rider id, as in the stage ranking,
+    //since slots are reused and a reloaded portal fills them in a different order
+    private static boolean faster(Times times, int checkpoint, int a, int b) {
+        long timeA = times.getCheckpointTimeAt(checkpoint, a);
+        long timeB = times.getCheckpointTimeAt(checkpoint, b);
+        return timeA < timeB || (timeA == timeB && times.getRiderId(a) < times.getRiderId(b));
+    }
+
+    private static void siftUp(Times times, int checkpoint, int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!faster(times, checkpoint, heap[parent], heap[index])) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(Times times, int checkpoint, int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int slowest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && faster(times, checkpoint, heap[slowest], heap[left])) {
+                slowest = left;
+            }
+            if (right < size && faster(times, checkpoint, heap[slowest], heap[right])) {
+                slowest = right;
+            }
+            if (slowest == index) {
+                return;
+            }
+            swap(heap, index, slowest);
+            index = slowest;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int held = heap[a];
+        heap[a] = heap[b];
+        heap[b] = held;
+    }
+}
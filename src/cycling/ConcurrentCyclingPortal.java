@@ -0,0 +1,468 @@
+package cycling;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ConcurrentCyclingPortal class, a portal that can be used by many threads at once,
+ * e.g. several timing feeds registering results while readers ask for rankings.
+ * <p>
+ * Stages are spread over a fixed set of read-write locks (stripes) by their id. Registering or deleting a result
+ * only takes the write lock of its stage's stripe, so results for different stages are written in parallel.
+ * Changes to the structure of the portal (races, stages, checkpoints, teams and riders) are rare,
+ * and take the write lock of every stripe, which keeps every other call out while they run.
+ * <p>
+ * Race details, stage lengths, the id lists and the general classification are read without any stripe lock,
+ * as the registry is made of concurrent maps, those fields never change once an entity is created,
+ * and the stage, checkpoint and rider lists are published as fresh copies whenever they change.
+ * A stage's rankings are also read without a lock while they are cached, which they are from the first read
+ * after a change until the next change.
+ * Any other read takes a single read lock.
+ * @author Aria Noroozi
+ */
+public class ConcurrentCyclingPortal extends CyclingPortalImpl {
+    private final ReentrantReadWriteLock[] stripes;
+    private final int mask;
+
+    //a stripe count of four per core keeps two busy stages from landing on the same stripe most of the time
+    public ConcurrentCyclingPortal() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param stripeCount the number of locks stages are spread over, rounded up to a power of two
+    */
+    public ConcurrentCyclingPortal(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        mask = size - 1;
+    }
+
+	@Override
+	public int createRace(String name, String description) throws IllegalNameException, InvalidNameException {
+        lockStructure();
+        try {
+            return super.createRace(name, description);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public void removeRaceById(int raceId) throws IDNotRecognisedException {
+        lockStructure();
+        try {
+            super.removeRaceById(raceId);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public void removeRaceByName(String name) throws NameNotRecognisedException {
+        lockStructure();
+        try {
+            super.removeRaceByName(name);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public int addStageToRace(int raceId, String stageName, String description, double length, LocalDateTime startTime,
+			StageType type)
+			throws IDNotRecognisedException, IllegalNameException, InvalidNameException, InvalidLengthException {
+        lockStructure();
+        try {
+            return super.addStageToRace(raceId, stageName, description, length, startTime, type);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public void removeStageById(int stageId) throws IDNotRecognisedException {
+        lockStructure();
+        try {
+            super.removeStageById(stageId);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public int addCategorizedClimbToStage(int stageId, Double location, CheckpointType type, Double averageGradient,
+			Double length) throws IDNotRecognisedException, InvalidLocationException, InvalidStageStateException,
+			InvalidStageTypeException {
+        lockStructure();
+        try {
+            return super.addCategorizedClimbToStage(stageId, location, type, averageGradient, length);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public int addIntermediateSprintToStage(int stageId, double location) throws IDNotRecognisedException,
+			InvalidLocationException, InvalidStageStateException, InvalidStageTypeException {
+        lockStructure();
+        try {
+            return super.addIntermediateSprintToStage(stageId, location);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public void removeCheckpoint(int checkpointId) throws IDNotRecognisedException, InvalidStageStateException {
+        lockStructure();
+        try {
+            super.removeCheckpoint(checkpointId);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public void concludeStagePreparation(int stageId) throws IDNotRecognisedException, InvalidStageStateException {
+        lockStructure();
+        try {
+            super.concludeStagePreparation(stageId);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public int createTeam(String name, String description) throws IllegalNameException, InvalidNameException {
+        lockStructure();
+        try {
+            return super.createTeam(name, description);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public void removeTeam(int teamId) throws IDNotRecognisedException {
+        lockStructure();
+        try {
+            super.removeTeam(teamId);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public int createRider(int teamID, String name, int yearOfBirth) throws IDNotRecognisedException, IllegalArgumentException {
+        lockStructure();
+        try {
+            return super.createRider(teamID, name, yearOfBirth);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public void removeRider(int riderId) throws IDNotRecognisedException {
+        lockStructure();
+        try {
+            super.removeRider(riderId);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public void registerRiderResultsInStage(int stageId, int riderId, LocalTime... checkpoints)
+			throws IDNotRecognisedException, DuplicatedResultException, InvalidCheckpointTimesException,
+			InvalidStageStateException {
+        Lock lock = stripe(stageId).writeLock();
+        lock.lock();
+        try {
+            super.registerRiderResultsInStage(stageId, riderId, checkpoints);
+        }
+        finally {
+            lock.unlock();
+        }
+	}
+
+	@Override
+	public void registerStageResultsBatch(int stageId, Map<Integer, LocalTime[]> results)
+			throws IDNotRecognisedException, DuplicatedResultException, InvalidCheckpointTimesException,
+			InvalidStageStateException {
+        Lock lock = stripe(stageId).writeLock();
+        lock.lock();
+        try {
+            super.registerStageResultsBatch(stageId, results);
+        }
+        finally {
+            lock.unlock();
+        }
+	}
+
+	@Override
+	public LocalTime[] getRiderResultsInStage(int stageId, int riderId) throws IDNotRecognisedException {
+        Lock lock = stripe(stageId).readLock();
+        lock.lock();
+        try {
+            return super.getRiderResultsInStage(stageId, riderId);
+        }
+        finally {
+            lock.unlock();
+        }
+	}
+
+	@Override
+	public LocalTime getRiderAdjustedElapsedTimeInStage(int stageId, int riderId) throws IDNotRecognisedException {
+        Lock lock = stripe(stageId).readLock();
+        lock.lock();
+        try {
+            return super.getRiderAdjustedElapsedTimeInStage(stageId, riderId);
+        }
+        finally {
+            lock.unlock();
+        }
+	}
+
+	@Override
+	public void deleteRiderResultsInStage(int stageId, int riderId) throws IDNotRecognisedException {
+        Lock lock = stripe(stageId).writeLock();
+        lock.lock();
+        try {
+            super.deleteRiderResultsInStage(stageId, riderId);
+        }
+        finally {
+            lock.unlock();
+        }
+	}
+
+	@Override
+	public int[] getRidersRankInStage(int stageId) throws IDNotRecognisedException {
+        //no lock is needed while the stage's ranking is cached
+        Stage stage = getRegistry().getStage(stageId);
+        if (stage != null) {
+            int[] rankedRiders = stage.getLeaderboard().getCachedRankedRiderIds();
+            if (rankedRiders != null) {
+                return rankedRiders;
+            }
+        }
+        Lock lock = stripe(stageId).readLock();
+        lock.lock();
+        try {
+            return super.getRidersRankInStage(stageId);
+        }
+        finally {
+            lock.unlock();
+        }
+	}
+
+	//the read lock is held while the visitor runs, so writers to the same stripe wait for the stage to be streamed out
+	@Override
+	public void forEachRankedResultInStage(int stageId, RankedTimeVisitor visitor) throws IDNotRecognisedException, IOException {
+        Lock lock = stripe(stageId).readLock();
+        lock.lock();
+        try {
+            super.forEachRankedResultInStage(stageId, visitor);
+        }
+        finally {
+            lock.unlock();
+        }
+	}
+
+	//the read lock keeps out a result being written, so the version is never read between the results and rankings changing
+	@Override
+	public long getStageResultsVersion(int stageId) throws IDNotRecognisedException {
+        Lock lock = stripe(stageId).readLock();
+        lock.lock();
+        try {
+            return super.getStageResultsVersion(stageId);
+        }
+        finally {
+            lock.unlock();
+        }
+	}
+
+	@Override
+	public LocalTime[] getRankedAdjustedElapsedTimesInStage(int stageId) throws IDNotRecognisedException {
+        Stage stage = getRegistry().getStage(stageId);
+        if (stage != null) {
+            long[] elapsedTimes = stage.getLeaderboard().getCachedRankedElapsedTimes();
+            if (elapsedTimes != null) {
+                return ElapsedTime.toLocalTimes(elapsedTimes);
+            }
+        }
+        Lock lock = stripe(stageId).readLock();
+        lock.lock();
+        try {
+            return super.getRankedAdjustedElapsedTimesInStage(stageId);
+        }
+        finally {
+            lock.unlock();
+        }
+	}
+
+	@Override
+	public int[] getRidersPointsInStage(int stageId) throws IDNotRecognisedException {
+        Lock lock = stripe(stageId).readLock();
+        lock.lock();
+        try {
+            return super.getRidersPointsInStage(stageId);
+        }
+        finally {
+            lock.unlock();
+        }
+	}
+
+	@Override
+	public int[] getRidersMountainPointsInStage(int stageId) throws IDNotRecognisedException {
+        Lock lock = stripe(stageId).readLock();
+        lock.lock();
+        try {
+            return super.getRidersMountainPointsInStage(stageId);
+        }
+        finally {
+            lock.unlock();
+        }
+	}
+
+	@Override
+	public void eraseCyclingPortal() {
+        lockStructure();
+        try {
+            super.eraseCyclingPortal();
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public void saveCyclingPortal(String filename) throws IOException {
+        //every stage is held still, so the snapshot is consistent across stages
+        lockAllStagesForReading();
+        try {
+            super.saveCyclingPortal(filename);
+        }
+        finally {
+            unlockAllStagesForReading();
+        }
+	}
+
+	@Override
+	public void loadCyclingPortal(String filename) throws IOException, ClassNotFoundException {
+        lockStructure();
+        try {
+            super.loadCyclingPortal(filename);
+        }
+        finally {
+            unlockStructure();
+        }
+	}
+
+	@Override
+	public RiderHistory.Result[] getRiderHistory(int riderId) throws IDNotRecognisedException {
+        lockAllStagesForReading();
+        try {
+            return super.getRiderHistory(riderId);
+        }
+        finally {
+            unlockAllStagesForReading();
+        }
+	}
+
+	@Override
+	public int[] getRidersPointsInRace(int raceId) throws IDNotRecognisedException {
+        lockAllStagesForReading();
+        try {
+            return super.getRidersPointsInRace(raceId);
+        }
+        finally {
+            unlockAllStagesForReading();
+        }
+	}
+
+	@Override
+	public int[] getRidersMountainPointsInRace(int raceId) throws IDNotRecognisedException {
+        lockAllStagesForReading();
+        try {
+            return super.getRidersMountainPointsInRace(raceId);
+        }
+        finally {
+            unlockAllStagesForReading();
+        }
+	}
+
+	@Override
+	public int[] getRidersPointClassificationRank(int raceId) throws IDNotRecognisedException {
+        lockAllStagesForReading();
+        try {
+            return super.getRidersPointClassificationRank(raceId);
+        }
+        finally {
+            unlockAllStagesForReading();
+        }
+	}
+
+	@Override
+	public int[] getRidersMountainPointClassificationRank(int raceId) throws IDNotRecognisedException {
+        lockAllStagesForReading();
+        try {
+            return super.getRidersMountainPointClassificationRank(raceId);
+        }
+        finally {
+            unlockAllStagesForReading();
+        }
+	}
+
+    //the stripe a stage's results are guarded by. The id is scrambled so consecutive stages land on different stripes
+    private ReentrantReadWriteLock stripe(int stageId) {
+        int hash = stageId * 0x9E3779B9;
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    //the stripes are always taken in the same order, so two threads taking all of them cannot deadlock
+    private void lockStructure() {
+        for (ReentrantReadWriteLock stripe : stripes) {
+            stripe.writeLock().lock();
+        }
+    }
+
+    private void unlockStructure() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].writeLock().unlock();
+        }
+    }
+
+    private void lockAllStagesForReading() {
+        for (ReentrantReadWriteLock stripe : stripes) {
+            stripe.readLock().lock();
+        }
+    }
+
+    private void unlockAllStagesForReading() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package cycling;
+
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CyclingPortalImpl class, extending the mini portal with the race-wide classifications.
+ * The general classification of each race is maintained by the race itself as results are
+ * registered and deleted, so the methods here only read it and attach the points to it.
+ * @author Aria Noroozi
+ */
+public class CyclingPortalImpl extends MiniCyclingPortalImpl implements CyclingPortal {
+
+	@Override
+	/** removes the race with the given name and all its related information */
+	public void removeRaceByName(String name) throws NameNotRecognisedException {
+		//the race is looked up in the registry's name index
+		int raceId = getRegistry().getRaceIdByName(name);
+        if (raceId != -1) {
+            try {
+                removeRaceById(raceId);
+                return;
+            } catch (IDNotRecognisedException e) {
+                //the race was removed by another call after it was looked up
+            }
+        }
+        throw new NameNotRecognisedException("The entered race name does not match any of the active races.");
+	}
+
+	@Override
+	/** gets the riders of a race, sorted by the sum of their stage times */
+	public int[] getRidersGeneralClassificationRank(int raceId) throws IDNotRecognisedException {
+		return findRace(raceId).getGeneralClassification().getRankedRiderIds();
+	}
+
+	@Override
+	/** gets the total times of the riders in a race, in the order of the general classification */
+	public LocalTime[] getGeneralClassificationTimesInRace(int raceId) throws IDNotRecognisedException {
+		long[] totals = findRace(raceId).getGeneralClassification().getRankedTotals();
+        return ElapsedTime.toLocalTimes(totals);
+	}
+
+	/**
+	 * Streams the general classification of a race to a visitor, in the same order as
+	 * getRidersGeneralClassificationRank, without copying it into arrays.
+	 *
+	 * @param raceId  The ID of the race being queried.
+	 * @param visitor Called with each rider's rank, ID and total time in nanoseconds.
+	 * @throws IDNotRecognisedException If the ID does not match any race in the system.
+	 * @throws IOException              If the visitor fails to write a result out.
+	 */
+	public void forEachGeneralClassificationResult(int raceId, RankedTimeVisitor visitor) throws IDNotRecognisedException, IOException {
+		findRace(raceId).getGeneralClassification().forEachRanked(visitor);
+	}
+
+	@Override
+	/** gets the points of the riders in a race, in the order of the general classification */
+	public int[] getRidersPointsInRace(int raceId) throws IDNotRecognisedException {
+		Race race = findRace(raceId);
+        return inClassificationOrder(race, getPointsByRider(race));
+	}
+
+	@Override
+	/** gets the mountain points of the riders in a race, in the order of the general classification */
+	public int[] getRidersMountainPointsInRace(int raceId) throws IDNotRecognisedException {
+		Race race = findRace(raceId);
+        return inClassificationOrder(race, getMountainPointsByRider(race));
+	}
+
+	@Override
+	/** gets the riders of a race sorted by the points they earnt over every stage */
+	public int[] getRidersPointClassificationRank(int raceId) throws IDNotRecognisedException {
+		Race race = findRace(raceId);
+        return rankByPoints(race, getPointsByRider(race));
+	}
+
+	@Override
+	/** gets the riders of a race sorted by the mountain points they earnt over every stage */
+	public int[] getRidersMountainPointClassificationRank(int raceId) throws IDNotRecognisedException {
+		Race race = findRace(raceId);
+        return rankByPoints(race, getMountainPointsByRider(race));
+	}
+
+    //looks the race up in the registry, throwing the usual exception if it is not there
+    private Race findRace(int raceId) throws IDNotRecognisedException {
+        Race race = getRegistry().getRace(raceId);
+        if (race == null) {throw new IDNotRecognisedException("The entered race ID is not present in the current list of races.");}
+        return race;
+    }
+
+    //lines the points up with the riders of the general classification
+    private int[] inClassificationOrder(Race race, Map<Integer, Integer> points) {
+        int[] rankedRiders = race.getGeneralClassification().getRankedRiderIds();
+        int[] rankedPoints = new int[rankedRiders.length];
+        for (int i = 0; i < rankedRiders.length; i++) {
+            rankedPoints[i] = points.getOrDefault(rankedRiders[i], 0);
+        }
+        return rankedPoints;
+    }
+
+    //sorts the riders of the general classification by points, most first. Ties keep their general classification order
+    private int[] rankByPoints(Race race, Map<Integer, Integer> points) {
+        int[] rankedRiders = race.getGeneralClassification().getRankedRiderIds();
+        Integer[] order = new Integer[rankedRiders.length];
+        for (int i = 0; i < rankedRiders.length; i++) {
+            order[i] = rankedRiders[i];
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(points.getOrDefault(b, 0), points.getOrDefault(a, 0)));
+        int[] ranked = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            ranked[i] = order[i];
+        }
+        return ranked;
+    }
+
+    //adds up the points each rider earnt at the finish of every stage in the race
+    private Map<Integer, Integer> getPointsByRider(Race race) {
+        Map<Integer, Integer> points = new HashMap<>();
+        for (Stage stage : race.getStages()) {
+            StageScores scores = stage.getScores();
+            for (int i = 0; i < scores.size(); i++) {
+                points.merge(scores.getRiderAt(i), scores.getPointsAt(i), Integer::sum);
+            }
+        }
+        return points;
+    }
+
+    //adds up the points each rider earnt on every climb in the race
+    private Map<Integer, Integer> getMountainPointsByRider(Race race) {
+        Map<Integer, Integer> points = new HashMap<>();
+        for (Stage stage : race.getStages()) {
+            StageScores scores = stage.getScores();
+            for (int i = 0; i < scores.size(); i++) {
+                points.merge(scores.getRiderAt(i), scores.getMountainPointsAt(i), Integer::sum);
+            }
+        }
+        return points;
+    }
+}
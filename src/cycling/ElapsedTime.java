@@ -0,0 +1,46 @@
+package cycling;
+
+import java.time.LocalTime;
+
+/**
+ * ElapsedTime class, converting between the LocalTime values used by the portal's interface and the
+ * primitive nanoseconds every elapsed time is stored, ranked and summed as inside the portal.
+ * Times are only turned back into LocalTime objects when they are handed out.
+ * @author Aria Noroozi
+ */
+public final class ElapsedTime {
+    //the number of nanoseconds in a day, the most a LocalTime can hold
+    public static final long NANOS_PER_DAY = 86_400_000_000_000L;
+
+    private ElapsedTime() {}
+
+    /**
+     * works out the time from the start of a stage to a time recorded in it, keeping sub-second precision
+     * @param startTime the time the stage started
+     * @param time the time recorded
+     * @return the elapsed time in nanoseconds. A time earlier in the day than the start is taken to be after midnight
+    */
+    public static long between(LocalTime startTime, LocalTime time) {
+        long elapsed = time.toNanoOfDay() - startTime.toNanoOfDay();
+        return elapsed < 0 ? elapsed + NANOS_PER_DAY : elapsed;
+    }
+
+    /**
+     * turns an elapsed time into the LocalTime handed out by the portal
+     * @param nanos the elapsed time in nanoseconds
+     * @return the time as a LocalTime. As a LocalTime cannot go past a day, longer times, such as race totals,
+     *         wrap round the same way LocalTime's own arithmetic does. Ordering is always done on the nanoseconds.
+    */
+    public static LocalTime toLocalTime(long nanos) {
+        return LocalTime.ofNanoOfDay(Math.floorMod(nanos, NANOS_PER_DAY));
+    }
+
+    //converts a whole column of elapsed times at once
+    public static LocalTime[] toLocalTimes(long[] nanos) {
+        LocalTime[] times = new LocalTime[nanos.length];
+        for (int i = 0; i < nanos.length; i++) {
+            times[i] = toLocalTime(nanos[i]);
+        }
+        return times;
+    }
+}
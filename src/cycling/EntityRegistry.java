@@ -0,0 +1,181 @@
+package cycling;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registry of every entity in the portal, indexed by id.
+ * The portal used to find races, stages, checkpoints, teams and riders by looping through
+ * the race and team lists; the registry keeps a hash index per class instead, so any
+ * entity can be fetched in constant time from its id alone.
+ * The indexes must be kept in sync by the portal whenever an entity is created, removed or loaded.
+ * They are concurrent maps, so an entity can be looked up while another thread is adding or removing one.
+ * Races and teams are also indexed by name, which is what keeps their names unique.
+ * @author Aria Noroozi
+ */
+public class EntityRegistry {
+    //races and teams are sorted by id, which is the order they were created in, as the portal returns their ids in that order
+    private Map<Integer, Race> races = new ConcurrentSkipListMap<>();
+    private Map<Integer, Team> teams = new ConcurrentSkipListMap<>();
+    //the remaining classes are only ever looked up by id
+    private Map<Integer, Stage> stages = new ConcurrentHashMap<>();
+    private Map<Integer, Checkpoint> checkpoints = new ConcurrentHashMap<>();
+    private Map<Integer, Rider> riders = new ConcurrentHashMap<>();
+    //race and team names mapped to their ids. A name is held with the id RESERVED while its race or team is being created
+    private ConcurrentHashMap<String, Integer> raceNames = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<String, Integer> teamNames = new ConcurrentHashMap<>();
+    private static final int RESERVED = -1;
+    //the ids handed out to new entities, kept with the entities so a loaded registry carries on from its own ids
+    private IdSequences idSequences = new IdSequences();
+    //the stages each rider has a result in, kept as results are registered and deleted
+    private Map<Integer, RiderHistory> histories = new ConcurrentHashMap<>();
+
+    public IdSequences getIdSequences() {return idSequences;}
+
+    //get methods, each returns null if the id is not registered
+    public Race getRace(int raceId) {return races.get(raceId);}
+    public Stage getStage(int stageId) {return stages.get(stageId);}
+    public Checkpoint getCheckpoint(int checkpointId) {return checkpoints.get(checkpointId);}
+    public Team getTeam(int teamId) {return teams.get(teamId);}
+    public Rider getRider(int riderId) {return riders.get(riderId);}
+
+    /**
+     * finds the stage a checkpoint belongs to
+     * @param checkpointId the id of the checkpoint
+     * @return the stage holding the checkpoint, or null if the checkpoint is not registered
+    */
+    public Stage getCheckpointStage(int checkpointId) {
+        Checkpoint checkpoint = checkpoints.get(checkpointId);
+        return checkpoint == null ? null : stages.get(checkpoint.getStageID());
+    }
+
+    /**
+     * finds the race a stage belongs to
+     * @param stageId the id of the stage
+     * @return the id of the race holding the stage, or -1 if the stage is not registered
+    */
+    public int getStageRaceId(int stageId) {
+        Stage stage = stages.get(stageId);
+        return stage == null ? -1 : stage.getRaceID();
+    }
+
+    //the history of a rider, or null if they have never had a result
+    public RiderHistory getHistory(int riderId) {return histories.get(riderId);}
+
+    //adds a stage result to a rider's history, called whenever a result is registered or loaded
+    public void recordParticipation(int riderId, int raceId, int stageId, long elapsed) {
+        histories.computeIfAbsent(riderId, id -> new RiderHistory()).record(raceId, stageId, elapsed);
+    }
+
+    //takes a stage result out of a rider's history, called whenever a result is deleted
+    public void removeParticipation(int riderId, int stageId) {
+        RiderHistory history = histories.get(riderId);
+        if (history != null) {
+            history.remove(stageId);
+        }
+    }
+
+    /**
+     * finds a race by its name, which is case sensitive
+     * @param name the name of the race
+     * @return the id of the race, or -1 if no race has that name
+    */
+    public int getRaceIdByName(String name) {
+        Integer raceId = raceNames.get(name);
+        return raceId == null ? -1 : raceId;
+    }
+
+    /**
+     * finds a team by its name, which is case sensitive
+     * @param name the name of the team
+     * @return the id of the team, or -1 if no team has that name
+    */
+    public int getTeamIdByName(String name) {
+        Integer teamId = teamNames.get(name);
+        return teamId == null ? -1 : teamId;
+    }
+
+    /**
+     * claims a name for a race about to be created. Only one caller can claim a name, so two races
+     * created at the same time cannot end up with the same name. The claim is completed by addRace
+     * @param name the name of the new race
+     * @return false if the name is already taken
+    */
+    public boolean reserveRaceName(String name) {return raceNames.putIfAbsent(name, RESERVED) == null;}
+
+    //the same for a team about to be created, completed by addTeam
+    public boolean reserveTeamName(String name) {return teamNames.putIfAbsent(name, RESERVED) == null;}
+
+    //views over the registered entities, races and teams are in the order they were created
+    public Collection<Race> getRaces() {return races.values();}
+    public Collection<Team> getTeams() {return teams.values();}
+    public Collection<Stage> getStages() {return stages.values();}
+    public Collection<Rider> getRiders() {return riders.values();}
+    public int getNumberOfRaces() {return races.size();}
+    public int getNumberOfTeams() {return teams.size();}
+
+    //add methods, called when an entity is created or loaded
+    public void addRace(Race race) {
+        races.put(race.getRaceID(), race);
+        raceNames.put(race.getRaceName(), race.getRaceID());
+    }
+
+    public void addStage(Stage stage) {stages.put(stage.getStageID(), stage);}
+    public void addCheckpoint(Checkpoint checkpoint) {checkpoints.put(checkpoint.getCheckpointId(), checkpoint);}
+    public void addTeam(Team team) {
+        teams.put(team.getTeamId(), team);
+        teamNames.put(team.getTeamName(), team.getTeamId());
+    }
+
+    public void addRider(Rider rider) {riders.put(rider.getRiderId(), rider);}
+
+    //remove methods. Removing a parent also removes everything registered under it
+    public void removeRace(Race race) {
+        for (Stage stage : race.getStages()) {
+            removeStage(stage);
+        }
+        races.remove(race.getRaceID());
+        raceNames.remove(race.getRaceName(), race.getRaceID());
+    }
+
+    public void removeStage(Stage stage) {
+        for (Checkpoint checkpoint : stage.getCheckpoints()) {
+            removeCheckpoint(checkpoint);
+        }
+        //the stage's results leave the histories of the riders who had them
+        for (int riderId : stage.getLeaderboard().getRankedRiderIds()) {
+            removeParticipation(riderId, stage.getStageID());
+        }
+        stages.remove(stage.getStageID());
+    }
+
+    public void removeCheckpoint(Checkpoint checkpoint) {checkpoints.remove(checkpoint.getCheckpointId());}
+
+    public void removeTeam(Team team) {
+        for (Rider rider : team.getRiders()) {
+            removeRider(rider);
+        }
+        teams.remove(team.getTeamId());
+        teamNames.remove(team.getTeamName(), team.getTeamId());
+    }
+
+    public void removeRider(Rider rider) {
+        riders.remove(rider.getRiderId());
+        histories.remove(rider.getRiderId());
+    }
+
+    //Called when the portal is erased or a new one is loaded in.
+    public void clear() {
+        races.clear();
+        teams.clear();
+        stages.clear();
+        checkpoints.clear();
+        riders.clear();
+        raceNames.clear();
+        teamNames.clear();
+        histories.clear();
+        idSequences.reset();
+    }
+}
@@ -0,0 +1,144 @@
+package cycling;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * GeneralClassification class, holding the running total time of every rider in a race.
+ * Rather than summing each stage for each rider whenever the classification is asked for,
+ * the totals are kept as primitive nanoseconds and updated as stage results are registered or deleted.
+ * The ranked order is sorted once and then reused until a total changes.
+ * The methods are synchronized, as results for different stages of the same race may be registered at the same time.
+ * @author Aria Noroozi
+ */
+public class GeneralClassification {
+    //every rider in the classification has a slot, their id and total time are stored at the same index.
+    //A rider leaving frees their slot for the next rider to join
+    private SlotAllocator slots = new SlotAllocator();
+    private int[] riderIds = new int[16];
+    private long[] totals = new long[16];
+    private int[] stagesRaced = new int[16];
+
+    //the ranked order handed out to readers, rebuilt only once a total has changed
+    private transient int[] rankedRiderIds;
+    private transient long[] rankedTotals;
+
+    //get methods
+    public synchronized int size() {return slots.size();}
+
+    /**
+     * gets the total time of a rider in the race
+     * @param riderId the id of the rider
+     * @return the sum of the rider's stage times in nanoseconds, or -1 if the rider has no results in the race
+    */
+    public synchronized long getTotal(int riderId) {
+        int slot = slots.slotOf(riderId);
+        return slot < 0 ? -1 : totals[slot];
+    }
+
+    /**
+     * adds a stage time to a rider's total, called when a result is registered
+     * @param riderId the id of the rider
+     * @param elapsed the rider's elapsed time in the stage, in nanoseconds
+    */
+    public synchronized void addStageTime(int riderId, long elapsed) {
+        int slot = slots.slotOf(riderId);
+        if (slot < 0) {
+            slot = slots.allocate(riderId);
+            if (slot == riderIds.length) {
+                riderIds = Arrays.copyOf(riderIds, slot * 2);
+                totals = Arrays.copyOf(totals, slot * 2);
+                stagesRaced = Arrays.copyOf(stagesRaced, slot * 2);
+            }
+            riderIds[slot] = riderId;
+            totals[slot] = 0;
+            stagesRaced[slot] = 0;
+        }
+        totals[slot] += elapsed;
+        stagesRaced[slot]++;
+        invalidate();
+    }
+
+    /**
+     * takes a stage time off a rider's total, called when a result is deleted.
+     * The rider leaves the classification once they have no stage times left.
+     * @param riderId the id of the rider
+     * @param elapsed the rider's elapsed time in the stage, in nanoseconds
+    */
+    public synchronized void removeStageTime(int riderId, long elapsed) {
+        int slot = slots.slotOf(riderId);
+        if (slot < 0) {
+            return;
+        }
+        totals[slot] -= elapsed;
+        stagesRaced[slot]--;
+        if (stagesRaced[slot] == 0) {
+            slots.free(riderId);
+        }
+        invalidate();
+    }
+
+    //removes a rider from the classification entirely, called when the rider is removed from the portal
+    public synchronized void removeRider(int riderId) {
+        if (slots.free(riderId) >= 0) {
+            invalidate();
+        }
+    }
+
+    //the ids of the riders, from the least total time to the most. A copy is returned so callers cannot alter the classification
+    public synchronized int[] getRankedRiderIds() {
+        refresh();
+        return rankedRiderIds.clone();
+    }
+
+    //the total times in nanoseconds, matching getRankedRiderIds
+    public synchronized long[] getRankedTotals() {
+        refresh();
+        return rankedTotals.clone();
+    }
+
+    //calls the visitor for each rider from the least total time to the most. The lock is only held to fetch the ranking,
+    //which is replaced rather than changed when a total changes, so the visitor can take as long as it needs
+    public void forEachRanked(RankedTimeVisitor visitor) throws IOException {
+        int[] ids;
+        long[] times;
+        synchronized (this) {
+            refresh();
+            ids = rankedRiderIds;
+            times = rankedTotals;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            visitor.visit(i, ids[i], times[i]);
+        }
+    }
+
+    private void invalidate() {
+        rankedRiderIds = null;
+        rankedTotals = null;
+    }
+
+    //sorts the slots by total time, then rider id, and caches the result
+    private void refresh() {
+        if (rankedRiderIds != null) {
+            return;
+        }
+        int count = slots.size();
+        Integer[] order = new Integer[count];
+        int index = 0;
+        for (int slot = slots.nextUsed(0); slot >= 0; slot = slots.nextUsed(slot + 1)) {
+            order[index++] = slot;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int comparison = Long.compare(totals[a], totals[b]);
+            return comparison != 0 ? comparison : Integer.compare(riderIds[a], riderIds[b]);
+        });
+        int[] ids = new int[count];
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = riderIds[order[i]];
+            times[i] = totals[order[i]];
+        }
+        rankedRiderIds = ids;
+        rankedTotals = times;
+    }
+}
@@ -0,0 +1,47 @@
+package cycling;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IdSequences class, handing out the ids of one portal's races, stages, checkpoints, teams and riders.
+ * Each portal has its own sequences, held in its registry, so several portals in the same JVM
+ * number their entities independently and erasing one portal does not reset the ids of another.
+ * @author Aria Noroozi
+ */
+public class IdSequences {
+    private final AtomicInteger races = new AtomicInteger();
+    private final AtomicInteger stages = new AtomicInteger();
+    private final AtomicInteger checkpoints = new AtomicInteger();
+    private final AtomicInteger teams = new AtomicInteger();
+    private final AtomicInteger riders = new AtomicInteger();
+
+    //each call hands out the next unused id of its class
+    public int nextRaceId() {return races.getAndIncrement();}
+    public int nextStageId() {return stages.getAndIncrement();}
+    public int nextCheckpointId() {return checkpoints.getAndIncrement();}
+    public int nextTeamId() {return teams.getAndIncrement();}
+    public int nextRiderId() {return riders.getAndIncrement();}
+
+    //Called when the portal is erased, so that ids can start from 0 again.
+    public void reset() {set(new int[5]);}
+
+    /**
+     * gets the next id of every class, in the order race, stage, checkpoint, team, rider, as saved in a snapshot
+     * @return the five next ids
+    */
+    public int[] get() {
+        return new int[] {races.get(), stages.get(), checkpoints.get(), teams.get(), riders.get()};
+    }
+
+    /**
+     * sets the next id of every class, so a loaded portal carries on from where the saved one left off
+     * @param next the five next ids, in the same order as get
+    */
+    public void set(int[] next) {
+        races.set(next[0]);
+        stages.set(next[1]);
+        checkpoints.set(next[2]);
+        teams.set(next[3]);
+        riders.set(next[4]);
+    }
+}
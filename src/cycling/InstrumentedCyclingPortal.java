@@ -0,0 +1,648 @@
+package cycling;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * InstrumentedCyclingPortal class, a portal that passes every call on to another portal and records how it went:
+ * the number of calls, the exceptions thrown, by class, and a histogram of how long each call took.
+ * Recording a call takes two reads of System.nanoTime() and one atomic increment of a histogram bucket,
+ * with no lock and no allocation, so it can stay on under load.
+ * The statistics are read from getMetrics(), as a snapshot or as JMX MXBeans.
+ * <p>
+ * A call's time includes any time spent waiting on the wrapped portal's locks, as that is part of what the caller sees.
+ * Methods outside the CyclingPortal interface, such as registerStageResultsBatch, are reached through the wrapped portal
+ * and are not recorded.
+ * @author Aria Noroozi
+ */
+public class InstrumentedCyclingPortal implements CyclingPortal {
+    private final CyclingPortal portal;
+    private final PortalMetrics metrics = new PortalMetrics();
+
+    //the statistics of each method, named after it
+    private final MethodStats getRaceIds = metrics.method("getRaceIds");
+    private final MethodStats createRace = metrics.method("createRace");
+    private final MethodStats viewRaceDetails = metrics.method("viewRaceDetails");
+    private final MethodStats removeRaceById = metrics.method("removeRaceById");
+    private final MethodStats getNumberOfStages = metrics.method("getNumberOfStages");
+    private final MethodStats addStageToRace = metrics.method("addStageToRace");
+    private final MethodStats getRaceStages = metrics.method("getRaceStages");
+    private final MethodStats getStageLength = metrics.method("getStageLength");
+    private final MethodStats removeStageById = metrics.method("removeStageById");
+    private final MethodStats addCategorizedClimbToStage = metrics.method("addCategorizedClimbToStage");
+    private final MethodStats addIntermediateSprintToStage = metrics.method("addIntermediateSprintToStage");
+    private final MethodStats removeCheckpoint = metrics.method("removeCheckpoint");
+    private final MethodStats concludeStagePreparation = metrics.method("concludeStagePreparation");
+    private final MethodStats getStageCheckpoints = metrics.method("getStageCheckpoints");
+    private final MethodStats createTeam = metrics.method("createTeam");
+    private final MethodStats removeTeam = metrics.method("removeTeam");
+    private final MethodStats getTeams = metrics.method("getTeams");
+    private final MethodStats getTeamRiders = metrics.method("getTeamRiders");
+    private final MethodStats createRider = metrics.method("createRider");
+    private final MethodStats removeRider = metrics.method("removeRider");
+    private final MethodStats registerRiderResultsInStage = metrics.method("registerRiderResultsInStage");
+    private final MethodStats getRiderResultsInStage = metrics.method("getRiderResultsInStage");
+    private final MethodStats getRiderAdjustedElapsedTimeInStage = metrics.method("getRiderAdjustedElapsedTimeInStage");
+    private final MethodStats deleteRiderResultsInStage = metrics.method("deleteRiderResultsInStage");
+    private final MethodStats getRidersRankInStage = metrics.method("getRidersRankInStage");
+    private final MethodStats getRankedAdjustedElapsedTimesInStage = metrics.method("getRankedAdjustedElapsedTimesInStage");
+    private final MethodStats getRidersPointsInStage = metrics.method("getRidersPointsInStage");
+    private final MethodStats getRidersMountainPointsInStage = metrics.method("getRidersMountainPointsInStage");
+    private final MethodStats eraseCyclingPortal = metrics.method("eraseCyclingPortal");
+    private final MethodStats saveCyclingPortal = metrics.method("saveCyclingPortal");
+    private final MethodStats loadCyclingPortal = metrics.method("loadCyclingPortal");
+    private final MethodStats removeRaceByName = metrics.method("removeRaceByName");
+    private final MethodStats getRidersGeneralClassificationRank = metrics.method("getRidersGeneralClassificationRank");
+    private final MethodStats getGeneralClassificationTimesInRace = metrics.method("getGeneralClassificationTimesInRace");
+    private final MethodStats getRidersPointsInRace = metrics.method("getRidersPointsInRace");
+    private final MethodStats getRidersMountainPointsInRace = metrics.method("getRidersMountainPointsInRace");
+    private final MethodStats getRidersPointClassificationRank = metrics.method("getRidersPointClassificationRank");
+    private final MethodStats getRidersMountainPointClassificationRank = metrics.method("getRidersMountainPointClassificationRank");
+
+    /**
+     * @param portal the portal every call is passed on to
+    */
+    public InstrumentedCyclingPortal(CyclingPortal portal) {
+        this.portal = portal;
+    }
+
+    //get methods
+    public CyclingPortal getPortal() {return portal;}
+    public PortalMetrics getMetrics() {return metrics;}
+
+	@Override
+	public int[] getRaceIds() {
+        long start = System.nanoTime();
+        try {
+            return portal.getRaceIds();
+        }
+        catch (Exception e) {
+            getRaceIds.failed(e);
+            throw e;
+        }
+        finally {
+            getRaceIds.record(start);
+        }
+	}
+
+	@Override
+	public int createRace(String name, String description) throws IllegalNameException, InvalidNameException {
+        long start = System.nanoTime();
+        try {
+            return portal.createRace(name, description);
+        }
+        catch (Exception e) {
+            createRace.failed(e);
+            throw e;
+        }
+        finally {
+            createRace.record(start);
+        }
+	}
+
+	@Override
+	public String viewRaceDetails(int raceId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.viewRaceDetails(raceId);
+        }
+        catch (Exception e) {
+            viewRaceDetails.failed(e);
+            throw e;
+        }
+        finally {
+            viewRaceDetails.record(start);
+        }
+	}
+
+	@Override
+	public void removeRaceById(int raceId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            portal.removeRaceById(raceId);
+        }
+        catch (Exception e) {
+            removeRaceById.failed(e);
+            throw e;
+        }
+        finally {
+            removeRaceById.record(start);
+        }
+	}
+
+	@Override
+	public int getNumberOfStages(int raceId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getNumberOfStages(raceId);
+        }
+        catch (Exception e) {
+            getNumberOfStages.failed(e);
+            throw e;
+        }
+        finally {
+            getNumberOfStages.record(start);
+        }
+	}
+
+	@Override
+	public int addStageToRace(int raceId, String stageName, String description, double length, LocalDateTime startTime, StageType type)
+			throws IDNotRecognisedException, IllegalNameException, InvalidNameException, InvalidLengthException {
+        long start = System.nanoTime();
+        try {
+            return portal.addStageToRace(raceId, stageName, description, length, startTime, type);
+        }
+        catch (Exception e) {
+            addStageToRace.failed(e);
+            throw e;
+        }
+        finally {
+            addStageToRace.record(start);
+        }
+	}
+
+	@Override
+	public int[] getRaceStages(int raceId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRaceStages(raceId);
+        }
+        catch (Exception e) {
+            getRaceStages.failed(e);
+            throw e;
+        }
+        finally {
+            getRaceStages.record(start);
+        }
+	}
+
+	@Override
+	public double getStageLength(int stageId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getStageLength(stageId);
+        }
+        catch (Exception e) {
+            getStageLength.failed(e);
+            throw e;
+        }
+        finally {
+            getStageLength.record(start);
+        }
+	}
+
+	@Override
+	public void removeStageById(int stageId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            portal.removeStageById(stageId);
+        }
+        catch (Exception e) {
+            removeStageById.failed(e);
+            throw e;
+        }
+        finally {
+            removeStageById.record(start);
+        }
+	}
+
+	@Override
+	public int addCategorizedClimbToStage(int stageId, Double location, CheckpointType type, Double averageGradient, Double length)
+			throws IDNotRecognisedException, InvalidLocationException, InvalidStageStateException, InvalidStageTypeException {
+        long start = System.nanoTime();
+        try {
+            return portal.addCategorizedClimbToStage(stageId, location, type, averageGradient, length);
+        }
+        catch (Exception e) {
+            addCategorizedClimbToStage.failed(e);
+            throw e;
+        }
+        finally {
+            addCategorizedClimbToStage.record(start);
+        }
+	}
+
+	@Override
+	public int addIntermediateSprintToStage(int stageId, double location)
+			throws IDNotRecognisedException, InvalidLocationException, InvalidStageStateException, InvalidStageTypeException {
+        long start = System.nanoTime();
+        try {
+            return portal.addIntermediateSprintToStage(stageId, location);
+        }
+        catch (Exception e) {
+            addIntermediateSprintToStage.failed(e);
+            throw e;
+        }
+        finally {
+            addIntermediateSprintToStage.record(start);
+        }
+	}
+
+	@Override
+	public void removeCheckpoint(int checkpointId) throws IDNotRecognisedException, InvalidStageStateException {
+        long start = System.nanoTime();
+        try {
+            portal.removeCheckpoint(checkpointId);
+        }
+        catch (Exception e) {
+            removeCheckpoint.failed(e);
+            throw e;
+        }
+        finally {
+            removeCheckpoint.record(start);
+        }
+	}
+
+	@Override
+	public void concludeStagePreparation(int stageId) throws IDNotRecognisedException, InvalidStageStateException {
+        long start = System.nanoTime();
+        try {
+            portal.concludeStagePreparation(stageId);
+        }
+        catch (Exception e) {
+            concludeStagePreparation.failed(e);
+            throw e;
+        }
+        finally {
+            concludeStagePreparation.record(start);
+        }
+	}
+
+	@Override
+	public int[] getStageCheckpoints(int stageId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getStageCheckpoints(stageId);
+        }
+        catch (Exception e) {
+            getStageCheckpoints.failed(e);
+            throw e;
+        }
+        finally {
+            getStageCheckpoints.record(start);
+        }
+	}
+
+	@Override
+	public int createTeam(String name, String description) throws IllegalNameException, InvalidNameException {
+        long start = System.nanoTime();
+        try {
+            return portal.createTeam(name, description);
+        }
+        catch (Exception e) {
+            createTeam.failed(e);
+            throw e;
+        }
+        finally {
+            createTeam.record(start);
+        }
+	}
+
+	@Override
+	public void removeTeam(int teamId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            portal.removeTeam(teamId);
+        }
+        catch (Exception e) {
+            removeTeam.failed(e);
+            throw e;
+        }
+        finally {
+            removeTeam.record(start);
+        }
+	}
+
+	@Override
+	public int[] getTeams() {
+        long start = System.nanoTime();
+        try {
+            return portal.getTeams();
+        }
+        catch (Exception e) {
+            getTeams.failed(e);
+            throw e;
+        }
+        finally {
+            getTeams.record(start);
+        }
+	}
+
+	@Override
+	public int[] getTeamRiders(int teamId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getTeamRiders(teamId);
+        }
+        catch (Exception e) {
+            getTeamRiders.failed(e);
+            throw e;
+        }
+        finally {
+            getTeamRiders.record(start);
+        }
+	}
+
+	@Override
+	public int createRider(int teamID, String name, int yearOfBirth)
+			throws IDNotRecognisedException, IllegalArgumentException {
+        long start = System.nanoTime();
+        try {
+            return portal.createRider(teamID, name, yearOfBirth);
+        }
+        catch (Exception e) {
+            createRider.failed(e);
+            throw e;
+        }
+        finally {
+            createRider.record(start);
+        }
+	}
+
+	@Override
+	public void removeRider(int riderId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            portal.removeRider(riderId);
+        }
+        catch (Exception e) {
+            removeRider.failed(e);
+            throw e;
+        }
+        finally {
+            removeRider.record(start);
+        }
+	}
+
+	@Override
+	public void registerRiderResultsInStage(int stageId, int riderId, LocalTime... checkpointTimes)
+			throws IDNotRecognisedException, DuplicatedResultException, InvalidCheckpointTimesException, InvalidStageStateException {
+        long start = System.nanoTime();
+        try {
+            portal.registerRiderResultsInStage(stageId, riderId, checkpointTimes);
+        }
+        catch (Exception e) {
+            registerRiderResultsInStage.failed(e);
+            throw e;
+        }
+        finally {
+            registerRiderResultsInStage.record(start);
+        }
+	}
+
+	@Override
+	public LocalTime[] getRiderResultsInStage(int stageId, int riderId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRiderResultsInStage(stageId, riderId);
+        }
+        catch (Exception e) {
+            getRiderResultsInStage.failed(e);
+            throw e;
+        }
+        finally {
+            getRiderResultsInStage.record(start);
+        }
+	}
+
+	@Override
+	public LocalTime getRiderAdjustedElapsedTimeInStage(int stageId, int riderId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRiderAdjustedElapsedTimeInStage(stageId, riderId);
+        }
+        catch (Exception e) {
+            getRiderAdjustedElapsedTimeInStage.failed(e);
+            throw e;
+        }
+        finally {
+            getRiderAdjustedElapsedTimeInStage.record(start);
+        }
+	}
+
+	@Override
+	public void deleteRiderResultsInStage(int stageId, int riderId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            portal.deleteRiderResultsInStage(stageId, riderId);
+        }
+        catch (Exception e) {
+            deleteRiderResultsInStage.failed(e);
+            throw e;
+        }
+        finally {
+            deleteRiderResultsInStage.record(start);
+        }
+	}
+
+	@Override
+	public int[] getRidersRankInStage(int stageId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRidersRankInStage(stageId);
+        }
+        catch (Exception e) {
+            getRidersRankInStage.failed(e);
+            throw e;
+        }
+        finally {
+            getRidersRankInStage.record(start);
+        }
+	}
+
+	@Override
+	public LocalTime[] getRankedAdjustedElapsedTimesInStage(int stageId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRankedAdjustedElapsedTimesInStage(stageId);
+        }
+        catch (Exception e) {
+            getRankedAdjustedElapsedTimesInStage.failed(e);
+            throw e;
+        }
+        finally {
+            getRankedAdjustedElapsedTimesInStage.record(start);
+        }
+	}
+
+	@Override
+	public int[] getRidersPointsInStage(int stageId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRidersPointsInStage(stageId);
+        }
+        catch (Exception e) {
+            getRidersPointsInStage.failed(e);
+            throw e;
+        }
+        finally {
+            getRidersPointsInStage.record(start);
+        }
+	}
+
+	@Override
+	public int[] getRidersMountainPointsInStage(int stageId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRidersMountainPointsInStage(stageId);
+        }
+        catch (Exception e) {
+            getRidersMountainPointsInStage.failed(e);
+            throw e;
+        }
+        finally {
+            getRidersMountainPointsInStage.record(start);
+        }
+	}
+
+	@Override
+	public void eraseCyclingPortal() {
+        long start = System.nanoTime();
+        try {
+            portal.eraseCyclingPortal();
+        }
+        catch (Exception e) {
+            eraseCyclingPortal.failed(e);
+            throw e;
+        }
+        finally {
+            eraseCyclingPortal.record(start);
+        }
+	}
+
+	@Override
+	public void saveCyclingPortal(String filename) throws IOException {
+        long start = System.nanoTime();
+        try {
+            portal.saveCyclingPortal(filename);
+        }
+        catch (Exception e) {
+            saveCyclingPortal.failed(e);
+            throw e;
+        }
+        finally {
+            saveCyclingPortal.record(start);
+        }
+	}
+
+	@Override
+	public void loadCyclingPortal(String filename) throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        try {
+            portal.loadCyclingPortal(filename);
+        }
+        catch (Exception e) {
+            loadCyclingPortal.failed(e);
+            throw e;
+        }
+        finally {
+            loadCyclingPortal.record(start);
+        }
+	}
+
+	@Override
+	public void removeRaceByName(String name) throws NameNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            portal.removeRaceByName(name);
+        }
+        catch (Exception e) {
+            removeRaceByName.failed(e);
+            throw e;
+        }
+        finally {
+            removeRaceByName.record(start);
+        }
+	}
+
+	@Override
+	public int[] getRidersGeneralClassificationRank(int raceId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRidersGeneralClassificationRank(raceId);
+        }
+        catch (Exception e) {
+            getRidersGeneralClassificationRank.failed(e);
+            throw e;
+        }
+        finally {
+            getRidersGeneralClassificationRank.record(start);
+        }
+	}
+
+	@Override
+	public LocalTime[] getGeneralClassificationTimesInRace(int raceId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getGeneralClassificationTimesInRace(raceId);
+        }
+        catch (Exception e) {
+            getGeneralClassificationTimesInRace.failed(e);
+            throw e;
+        }
+        finally {
+            getGeneralClassificationTimesInRace.record(start);
+        }
+	}
+
+	@Override
+	public int[] getRidersPointsInRace(int raceId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRidersPointsInRace(raceId);
+        }
+        catch (Exception e) {
+            getRidersPointsInRace.failed(e);
+            throw e;
+        }
+        finally {
+            getRidersPointsInRace.record(start);
+        }
+	}
+
+	@Override
+	public int[] getRidersMountainPointsInRace(int raceId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRidersMountainPointsInRace(raceId);
+        }
+        catch (Exception e) {
+            getRidersMountainPointsInRace.failed(e);
+            throw e;
+        }
+        finally {
+            getRidersMountainPointsInRace.record(start);
+        }
+	}
+
+	@Override
+	public int[] getRidersPointClassificationRank(int raceId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRidersPointClassificationRank(raceId);
+        }
+        catch (Exception e) {
+            getRidersPointClassificationRank.failed(e);
+            throw e;
+        }
+        finally {
+            getRidersPointClassificationRank.record(start);
+        }
+	}
+
+	@Override
+	public int[] getRidersMountainPointClassificationRank(int raceId) throws IDNotRecognisedException {
+        long start = System.nanoTime();
+        try {
+            return portal.getRidersMountainPointClassificationRank(raceId);
+        }
+        catch (Exception e) {
+            getRidersMountainPointClassificationRank.failed(e);
+            throw e;
+        }
+        finally {
+            getRidersMountainPointClassificationRank.record(start);
+        }
+	}
+}
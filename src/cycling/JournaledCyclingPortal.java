@@ -0,0 +1,519 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * JournaledCyclingPortal class, a portal that records every change in a PortalJournal before returning.
+ * A crash loses none of the changes that were returned from: opening the portal again on the same directory
+ * loads the last snapshot and replays the journal after it.
+ * Once the current journal segment grows past a threshold, a snapshot is taken in the background
+ * and the segments it covers are deleted, so recovery never has to replay more than one threshold's worth.
+ * <p>
+ * Changes are made one at a time under the portal's lock: the record is encoded, the journal is checked to still be writable,
+ * the change is applied, which validates it, then its record is appended, which only copies it into memory and cannot fail.
+ * A change therefore never leaves the lock without its record, and a snapshot, which is taken under the same lock,
+ * never holds a change the journal is missing. The record is forced to disk after the lock is let go,
+ * so threads making changes at the same time share the disk forces.
+ * Nothing is told about a change until its record is on disk: the call returns, and stage result listeners are called,
+ * in journal order, only then. If the record cannot be forced, the call throws an UncheckedIOException,
+ * the change is never passed on to listeners, and every later change is refused.
+ * <p>
+ * Only the changes are synchronized. The read methods take no lock, so reading while another thread makes a change
+ * may see the stage results and classifications half updated. Several threads may make changes at once, but reads must
+ * not overlap them; a portal that is read while it is written to, e.g. one served by a PortalHttpServer,
+ * should be a ConcurrentCyclingPortal, which journals nothing.
+ * @author Aria Noroozi
+ */
+public class JournaledCyclingPortal extends CyclingPortalImpl implements AutoCloseable {
+    //the size a segment may reach before a snapshot is taken
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 64L * 1024 * 1024;
+
+    //null while the journal is being replayed, so replayed changes are not written again
+    private PortalJournal journal;
+    private final long compactionThreshold;
+    private final ExecutorService compactor;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    //one change to a stage's results, held back until the record of the change is on disk
+    private static final class ResultChange {
+        private long sequence;
+        private final int stageId;
+        private final int riderId;
+        //-1 for a deleted result
+        private final int rank;
+        private final long elapsed;
+
+        private ResultChange(int stageId, int riderId, int rank, long elapsed) {
+            this.stageId = stageId;
+            this.riderId = riderId;
+            this.rank = rank;
+            this.elapsed = elapsed;
+        }
+    }
+
+    //the listeners added to this portal, which are only told about changes once they are on disk
+    private final List<StageResultListener> resultListeners = new CopyOnWriteArrayList<>();
+    //the result changes made by the change being applied, guarded by the portal's lock
+    private final List<ResultChange> applying = new ArrayList<>();
+    //changes waiting for their record to be forced, in journal order, and the lock held while passing them on
+    private final Queue<ResultChange> unpublished = new ConcurrentLinkedQueue<>();
+    private final Object publishing = new Object();
+    //registered with the portal underneath while this portal has listeners, to hold their calls back
+    private final StageResultListener recorder = new StageResultListener() {
+        @Override
+        public void resultRegistered(int stageId, int riderId, int rank, long elapsed) {
+            applying.add(new ResultChange(stageId, riderId, rank, elapsed));
+        }
+
+        @Override
+        public void resultDeleted(int stageId, int riderId) {
+            applying.add(new ResultChange(stageId, riderId, -1, 0));
+        }
+    };
+
+    private JournaledCyclingPortal(long compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+        this.compactor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "portal-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * opens a journaled portal, recovering whatever the directory holds
+     * @param directory the journal directory, created if it does not exist
+     * @return the recovered portal
+     * @throws IOException if the journal cannot be read
+    */
+    public static JournaledCyclingPortal open(String directory) throws IOException {
+        return open(directory, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * opens a journaled portal, recovering whatever the directory holds
+     * @param directory the journal directory, created if it does not exist
+     * @param compactionThreshold the size in bytes a segment may reach before a snapshot is taken
+     * @return the recovered portal
+     * @throws IOException if the journal cannot be read
+    */
+    public static JournaledCyclingPortal open(String directory, long compactionThreshold) throws IOException {
+        JournaledCyclingPortal portal = new JournaledCyclingPortal(compactionThreshold);
+        portal.journal = PortalJournal.recover(Paths.get(directory), portal);
+        return portal;
+    }
+
+    //get methods
+    public PortalJournal getJournal() {return journal;}
+
+    //listeners are called once the change they are told about is on disk, by whichever thread forced it
+    @Override
+    public synchronized void addStageResultListener(StageResultListener listener) {
+        if (resultListeners.isEmpty()) {
+            super.addStageResultListener(recorder);
+        }
+        resultListeners.add(listener);
+    }
+
+    @Override
+    public synchronized void removeStageResultListener(StageResultListener listener) {
+        if (resultListeners.remove(listener) && resultListeners.isEmpty()) {
+            super.removeStageResultListener(recorder);
+        }
+    }
+
+    /**
+     * takes a snapshot in the background and deletes the journal segments it covers
+     * @return completes once the snapshot is in place
+    */
+    public Future<Void> compact() {
+        return compactor.submit(() -> {
+            try {
+                writeSnapshot();
+            }
+            finally {
+                compacting.set(false);
+            }
+            return null;
+        });
+    }
+
+    //writes out anything still pending, waits for a running snapshot and closes the journal
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+	@Override
+	public int createRace(String name, String description) throws IllegalNameException, InvalidNameException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.CREATE_RACE).reserveId().putString(name).putString(description);
+        int raceId;
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            raceId = super.createRace(name, description);
+            sequence = append(record.setId(raceId));
+        }
+        commit(sequence);
+        return raceId;
+	}
+
+	@Override
+	public void removeRaceById(int raceId) throws IDNotRecognisedException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.REMOVE_RACE).putInt(raceId);
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            super.removeRaceById(raceId);
+            sequence = append(record);
+        }
+        commit(sequence);
+	}
+
+	@Override
+	public void removeRaceByName(String name) throws NameNotRecognisedException {
+        //only the lookup is made under the lock, the removal is recorded by removeRaceById, which forces it after letting go
+        int raceId;
+        synchronized (this) {
+            raceId = getRegistry().getRaceIdByName(name);
+        }
+        if (raceId != -1) {
+            try {
+                removeRaceById(raceId);
+                return;
+            } catch (IDNotRecognisedException e) {
+                //the race was removed by another call after it was looked up
+            }
+        }
+        throw new NameNotRecognisedException("The entered race name does not match any of the active races.");
+	}
+
+	@Override
+	public int addStageToRace(int raceId, String stageName, String description, double length, LocalDateTime startTime,
+			StageType type)
+			throws IDNotRecognisedException, IllegalNameException, InvalidNameException, InvalidLengthException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.ADD_STAGE).reserveId().putInt(raceId)
+                .putString(stageName).putString(description).putDouble(length);
+        if (startTime == null) {
+            record.putByte(0);
+        }
+        else {
+            record.putByte(1).putLong(startTime.toEpochSecond(ZoneOffset.UTC)).putInt(startTime.getNano());
+        }
+        record.putByte(type == null ? -1 : type.ordinal());
+        int stageId;
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            stageId = super.addStageToRace(raceId, stageName, description, length, startTime, type);
+            sequence = append(record.setId(stageId));
+        }
+        commit(sequence);
+        return stageId;
+	}
+
+	@Override
+	public void removeStageById(int stageId) throws IDNotRecognisedException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.REMOVE_STAGE).putInt(stageId);
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            super.removeStageById(stageId);
+            sequence = append(record);
+        }
+        commit(sequence);
+	}
+
+	@Override
+	public int addCategorizedClimbToStage(int stageId, Double location, CheckpointType type, Double averageGradient,
+			Double length) throws IDNotRecognisedException, InvalidLocationException, InvalidStageStateException,
+			InvalidStageTypeException {
+        //a climb the journal could not hold, e.g. one missing its type, is turned down before it is applied.
+        //A missing location is left to the portal, which turns it down as an invalid location
+        if (type == null || averageGradient == null || length == null) {
+            throw new IllegalArgumentException("The type, average gradient and length of a climb must all be given.");
+        }
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.ADD_CLIMB).reserveId().putInt(stageId)
+                .putDouble(location == null ? 0 : location).putByte(type.ordinal()).putDouble(averageGradient).putDouble(length);
+        int checkpointId;
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            checkpointId = super.addCategorizedClimbToStage(stageId, location, type, averageGradient, length);
+            sequence = append(record.setId(checkpointId));
+        }
+        commit(sequence);
+        return checkpointId;
+	}
+
+	@Override
+	public int addIntermediateSprintToStage(int stageId, double location) throws IDNotRecognisedException,
+			InvalidLocationException, InvalidStageStateException, InvalidStageTypeException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.ADD_SPRINT).reserveId().putInt(stageId).putDouble(location);
+        int checkpointId;
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            checkpointId = super.addIntermediateSprintToStage(stageId, location);
+            sequence = append(record.setId(checkpointId));
+        }
+        commit(sequence);
+        return checkpointId;
+	}
+
+	@Override
+	public void removeCheckpoint(int checkpointId) throws IDNotRecognisedException, InvalidStageStateException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.REMOVE_CHECKPOINT).putInt(checkpointId);
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            super.removeCheckpoint(checkpointId);
+            sequence = append(record);
+        }
+        commit(sequence);
+	}
+
+	@Override
+	public void concludeStagePreparation(int stageId) throws IDNotRecognisedException, InvalidStageStateException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.CONCLUDE_STAGE).putInt(stageId);
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            super.concludeStagePreparation(stageId);
+            sequence = append(record);
+        }
+        commit(sequence);
+	}
+
+	@Override
+	public int createTeam(String name, String description) throws IllegalNameException, InvalidNameException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.CREATE_TEAM).reserveId().putString(name).putString(description);
+        int teamId;
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            teamId = super.createTeam(name, description);
+            sequence = append(record.setId(teamId));
+        }
+        commit(sequence);
+        return teamId;
+	}
+
+	@Override
+	public void removeTeam(int teamId) throws IDNotRecognisedException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.REMOVE_TEAM).putInt(teamId);
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            super.removeTeam(teamId);
+            sequence = append(record);
+        }
+        commit(sequence);
+	}
+
+	@Override
+	public int createRider(int teamID, String name, int yearOfBirth) throws IDNotRecognisedException, IllegalArgumentException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.CREATE_RIDER).reserveId().putInt(teamID).putString(name).putInt(yearOfBirth);
+        int riderId;
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            riderId = super.createRider(teamID, name, yearOfBirth);
+            sequence = append(record.setId(riderId));
+        }
+        commit(sequence);
+        return riderId;
+	}
+
+	@Override
+	public void removeRider(int riderId) throws IDNotRecognisedException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.REMOVE_RIDER).putInt(riderId);
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            super.removeRider(riderId);
+            sequence = append(record);
+        }
+        commit(sequence);
+	}
+
+	@Override
+	public void registerRiderResultsInStage(int stageId, int riderId, LocalTime... checkpoints)
+			throws IDNotRecognisedException, DuplicatedResultException, InvalidCheckpointTimesException,
+			InvalidStageStateException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.REGISTER_RESULTS).putInt(stageId).putInt(riderId);
+        putTimes(record, checkpoints);
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            super.registerRiderResultsInStage(stageId, riderId, checkpoints);
+            sequence = append(record);
+        }
+        commit(sequence);
+	}
+
+	@Override
+	public void registerStageResultsBatch(int stageId, Map<Integer, LocalTime[]> results)
+			throws IDNotRecognisedException, DuplicatedResultException, InvalidCheckpointTimesException,
+			InvalidStageStateException {
+        //the batch is one record, so it is replayed whole or not at all
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.REGISTER_BATCH).putInt(stageId).putInt(results.size());
+        for (Map.Entry<Integer, LocalTime[]> entry : results.entrySet()) {
+            putTimes(record.putInt(entry.getKey()), entry.getValue());
+        }
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            super.registerStageResultsBatch(stageId, results);
+            sequence = append(record);
+        }
+        commit(sequence);
+	}
+
+	@Override
+	public void deleteRiderResultsInStage(int stageId, int riderId) throws IDNotRecognisedException {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.DELETE_RESULTS).putInt(stageId).putInt(riderId);
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            super.deleteRiderResultsInStage(stageId, riderId);
+            sequence = append(record);
+        }
+        commit(sequence);
+	}
+
+	@Override
+	public void eraseCyclingPortal() {
+        PortalJournal.Record record = new PortalJournal.Record(PortalJournal.ERASE);
+        long sequence;
+        synchronized (this) {
+            checkJournal();
+            super.eraseCyclingPortal();
+            sequence = append(record);
+        }
+        commit(sequence);
+	}
+
+	@Override
+	/** Loads a snapshot file, then takes a snapshot of the journal straight away, as a load cannot be replayed from the journal.
+	 * The lock is held until the snapshot is in place, as a change made after the load must not reach the journal before it */
+	public void loadCyclingPortal(String filename) throws IOException, ClassNotFoundException {
+        synchronized (this) {
+            super.loadCyclingPortal(filename);
+            if (journal != null) {
+                writeSnapshot();
+            }
+        }
+	}
+
+    //encodes a rider's times, which are checked by the portal when the change is applied. A missing time is written
+    //as -1 and a missing array as no times, as a change with either is turned down and its record never appended
+    private static void putTimes(PortalJournal.Record record, LocalTime[] times) {
+        if (times == null) {
+            record.putInt(0);
+            return;
+        }
+        record.putInt(times.length);
+        for (LocalTime time : times) {
+            record.putLong(time == null ? -1 : time.toNanoOfDay());
+        }
+    }
+
+    //refuses a change before it is applied if the journal can no longer be written to. Called under the lock
+    private void checkJournal() {
+        applying.clear();
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.checkWritable();
+        } catch (IOException e) {
+            throw new UncheckedIOException("The journal could not be written to, so no change was made.", e);
+        }
+    }
+
+    //adds the record of an applied change to the journal, unless the journal is being replayed. Called under the lock
+    private long append(PortalJournal.Record record) {
+        if (journal == null) {
+            applying.clear();
+            return -1;
+        }
+        long sequence = journal.append(record);
+        for (ResultChange change : applying) {
+            change.sequence = sequence;
+            unpublished.add(change);
+        }
+        applying.clear();
+        return sequence;
+    }
+
+    //waits for a record to be on disk, passes on the changes that now are, then starts a snapshot if the segment has grown too large
+    private void commit(long sequence) {
+        if (sequence < 0) {
+            return;
+        }
+        try {
+            journal.commit(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("The change was made but could not be written to the journal.", e);
+        }
+        publish(sequence);
+        if (journal.getSegmentSize() >= compactionThreshold && compacting.compareAndSet(false, true)) {
+            compact();
+        }
+    }
+
+    //tells the listeners about every held back change up to a record known to be on disk, in journal order
+    private void publish(long durable) {
+        synchronized (publishing) {
+            ResultChange change;
+            while ((change = unpublished.peek()) != null && change.sequence <= durable) {
+                unpublished.poll();
+                for (StageResultListener listener : resultListeners) {
+                    if (change.rank < 0) {
+                        listener.resultDeleted(change.stageId, change.riderId);
+                    }
+                    else {
+                        listener.resultRegistered(change.stageId, change.riderId, change.rank, change.elapsed);
+                    }
+                }
+            }
+        }
+    }
+
+    //rotates the journal and copies the portal as it is at the start of the new segment under the lock,
+    //then writes the copy out without holding up changes
+    private void writeSnapshot() throws IOException {
+        int segment;
+        byte[] snapshot;
+        synchronized (this) {
+            segment = journal.rotate();
+            snapshot = PortalSnapshot.toBytes(getRegistry());
+        }
+        Files.write(journal.getSnapshotTempPath(segment), snapshot);
+        journal.installSnapshot(segment);
+    }
+}
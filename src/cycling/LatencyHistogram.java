@@ -0,0 +1,129 @@
+package cycling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram class, counting durations in nanoseconds into log-linear buckets so percentiles can be read off it.
+ * Each power of two is split into 16 buckets, so a percentile is never more than 1/16 above the true value,
+ * from 16ns up to about 36 minutes. Longer durations all land in the last bucket, though the maximum is kept exactly.
+ * Recording is a single atomic increment of a bucket with no lock and no allocation, so many threads can record
+ * into the same histogram at once. A reader sees counts that may be a few calls apart from one another,
+ * which does not matter for percentiles.
+ * @author Aria Noroozi
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    //the highest power of two with buckets of its own, 2^41ns is about 36 minutes
+    private static final int MAX_EXPONENT = 41;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * counts one duration
+     * @param nanos the duration in nanoseconds, a negative duration is counted as 0
+    */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketOf(nanos));
+        //the maximum is only written when it goes up, which is rare once the histogram has warmed up
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    //the longest duration recorded, in nanoseconds
+    public long getMax() {return max.get();}
+
+    //the number of durations recorded
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * reads a percentile off the histogram
+     * @param percentile the percentile, e.g. 99.9
+     * @return the highest duration in the bucket the percentile falls in, capped at the maximum, or 0 if nothing was recorded
+    */
+    public long getPercentile(double percentile) {return getPercentiles(percentile)[0];}
+
+    /**
+     * reads several percentiles off the same copy of the counts, so they are consistent with one another
+     * @param percentiles the percentiles, e.g. 50, 99 and 99.9
+     * @return the duration of each percentile, in nanoseconds
+    */
+    public long[] getPercentiles(double... percentiles) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        long[] values = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            values[i] = percentile(snapshot, count, percentiles[i]);
+        }
+        return values;
+    }
+
+    //empties the histogram. Durations recorded while it is being reset may be kept or dropped
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    private long percentile(long[] snapshot, long count, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        //the rank of the percentile, counting from 1, so the 100th percentile is the last duration
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestIn(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    //durations below 16ns get a bucket each, above that each power of two is split into 16 equal buckets
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    //the highest duration that lands in a bucket
+    private static long highestIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,399 @@
+package cycling;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * MappedPortalArchive class, a read-only view over a portal snapshot written by {@link PortalSnapshot}.
+ * Instead of loading the snapshot onto the heap, the file is memory-mapped and queries are answered straight
+ * from the mapped bytes. Opening an archive only walks the record headers to note where each race and stage
+ * starts; a stage's checkpoints and results are only looked at once that stage is queried.
+ * This makes old seasons cheap to keep open next to the live portal.
+ * An archive can be queried by many threads at once: the indexes built on opening are never changed afterwards,
+ * and the parts worked out on demand are kept in concurrent maps. Every query holds a read lock while it reads
+ * the mapped bytes and closing takes the write lock, so the mapping cannot be dropped under a query.
+ * @author Aria Noroozi
+ */
+public class MappedPortalArchive implements AutoCloseable {
+
+    //where a stage's sections start in the file, worked out the first time the stage is queried
+    private static class StageView {
+        private StageType type;
+        private double length;
+        private int checkpointCount;
+        private int checkpointsOffset;
+        private int resultCount;
+        private int columns;
+        private int riderIdsOffset;
+    }
+
+    //the size of one checkpoint in a stage record: id, type, location, gradient and length
+    private static final int CHECKPOINT_BYTES = Integer.BYTES + 1 + 3 * Double.BYTES;
+
+    //null once the archive is closed, only read under the read lock and dropped under the write lock
+    private ByteBuffer buffer;
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+    //offsets of the race and stage records and the ids of the riders, found when the archive is opened
+    private final Map<Integer, Integer> raceOffsets = new LinkedHashMap<>();
+    private final Map<Integer, List<Integer>> raceStages = new HashMap<>();
+    private final Map<Integer, Integer> stageOffsets = new HashMap<>();
+    private final Set<Integer> riderIds = new HashSet<>();
+    //the stages that have been queried so far
+    private final Map<Integer, StageView> stageViews = new ConcurrentHashMap<>();
+    //rider id to rank per stage, only built for a stage once a single rider's results are asked for
+    private final Map<Integer, Map<Integer, Integer>> stageRanks = new ConcurrentHashMap<>();
+
+    /**
+     * maps a snapshot file and indexes where its races and stages are
+     * @param filename location of the snapshot file
+     * @throws IOException if the file cannot be mapped or is not a valid snapshot
+    */
+    public MappedPortalArchive(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(filename + " is larger than 2GB and cannot be mapped in one piece.");
+            }
+            //the mapping stays valid once the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer header = buffer.duplicate();
+        PortalSnapshot.checkHeader(header, filename);
+        try {
+            index(header.position() + 5 * Integer.BYTES);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException(filename + " is a damaged snapshot.", e);
+        }
+    }
+
+    //walks the section counts and record lengths, noting the offset of every race and stage
+    private void index(int offset) {
+        int races = buffer.getInt(offset);
+        offset += Integer.BYTES;
+        for (int i = 0; i < races; i++) {
+            int length = buffer.getInt(offset);
+            int raceId = buffer.getInt(offset + Integer.BYTES);
+            raceOffsets.put(raceId, offset + Integer.BYTES);
+            raceStages.put(raceId, new ArrayList<>());
+            offset += Integer.BYTES + length;
+        }
+        //teams are skipped over, and only the ids of the riders are kept
+        int teams = buffer.getInt(offset);
+        offset += Integer.BYTES;
+        for (int i = 0; i < teams; i++) {
+            offset += Integer.BYTES + buffer.getInt(offset);
+        }
+        int riders = buffer.getInt(offset);
+        offset += Integer.BYTES;
+        for (int i = 0; i < riders; i++) {
+            riderIds.add(buffer.getInt(offset + Integer.BYTES));
+            offset += Integer.BYTES + buffer.getInt(offset);
+        }
+        int stages = buffer.getInt(offset);
+        offset += Integer.BYTES;
+        for (int i = 0; i < stages; i++) {
+            int length = buffer.getInt(offset);
+            int stageId = buffer.getInt(offset + Integer.BYTES);
+            int raceId = buffer.getInt(offset + 2 * Integer.BYTES);
+            stageOffsets.put(stageId, offset + Integer.BYTES);
+            raceStages.get(raceId).add(stageId);
+            offset += Integer.BYTES + length;
+        }
+    }
+
+    //Get the races in the archive, in the order they were created.
+    public int[] getRaceIds() {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            checkOpen();
+            return raceOffsets.keySet().stream().mapToInt(Integer::intValue).toArray();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //returns the description of the race matching the entered race id
+    public String viewRaceDetails(int raceId) throws IDNotRecognisedException {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            int offset = findRace(raceId) + Integer.BYTES;
+            //the name is skipped to reach the description
+            offset += stringSize(offset);
+            return getString(offset);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //returns the number of stages in a race
+    public int getNumberOfStages(int raceId) throws IDNotRecognisedException {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            findRace(raceId);
+            return raceStages.get(raceId).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Retrieves the list of stage IDs of a race, in order.
+    public int[] getRaceStages(int raceId) throws IDNotRecognisedException {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            findRace(raceId);
+            return raceStages.get(raceId).stream().mapToInt(Integer::intValue).toArray();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Retrieves the length of a stage.
+    public double getStageLength(int stageId) throws IDNotRecognisedException {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            return view(stageId).length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Retrieves the list of checkpoint IDs of a stage, ordered by location.
+    public int[] getStageCheckpoints(int stageId) throws IDNotRecognisedException {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            StageView stage = view(stageId);
+            int[] checkpointIds = new int[stage.checkpointCount];
+            for (int i = 0; i < checkpointIds.length; i++) {
+                checkpointIds[i] = buffer.getInt(stage.checkpointsOffset + i * CHECKPOINT_BYTES);
+            }
+            return checkpointIds;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Lists all the times the rider reached each checkpoint and the end of the stage, or an empty array if they have no result.
+    //As in the live portal, a rider who is not in the archive at all is not recognised
+    public LocalTime[] getRiderResultsInStage(int stageId, int riderId) throws IDNotRecognisedException {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            StageView stage = view(stageId);
+            Integer rank = rankOf(stageId, stage, riderId);
+            if (rank == null) {
+                return new LocalTime[0];
+            }
+            LocalTime[] times = new LocalTime[stage.columns + 1];
+            int finishOffset = stage.riderIdsOffset + stage.resultCount * Integer.BYTES;
+            int columnsOffset = finishOffset + stage.resultCount * Long.BYTES;
+            for (int column = 0; column < stage.columns; column++) {
+                times[column] = ElapsedTime.toLocalTime(buffer.getLong(columnsOffset + (column * stage.resultCount + rank) * Long.BYTES));
+            }
+            times[stage.columns] = ElapsedTime.toLocalTime(buffer.getLong(finishOffset + rank * Long.BYTES));
+            return times;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Get the stage time of a specific rider, or null if they have no result
+    public LocalTime getRiderAdjustedElapsedTimeInStage(int stageId, int riderId) throws IDNotRecognisedException {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            StageView stage = view(stageId);
+            Integer rank = rankOf(stageId, stage, riderId);
+            if (rank == null) {
+                return null;
+            }
+            int finishOffset = stage.riderIdsOffset + stage.resultCount * Integer.BYTES;
+            return ElapsedTime.toLocalTime(buffer.getLong(finishOffset + rank * Long.BYTES));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //the riders of a stage in the order they finished, read straight from the saved rank order
+    public int[] getRidersRankInStage(int stageId) throws IDNotRecognisedException {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            StageView stage = view(stageId);
+            int[] riderIds = new int[stage.resultCount];
+            for (int i = 0; i < riderIds.length; i++) {
+                riderIds[i] = buffer.getInt(stage.riderIdsOffset + i * Integer.BYTES);
+            }
+            return riderIds;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //the times of the riders of a stage, matching getRidersRankInStage
+    public LocalTime[] getRankedAdjustedElapsedTimesInStage(int stageId) throws IDNotRecognisedException {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            StageView stage = view(stageId);
+            int finishOffset = stage.riderIdsOffset + stage.resultCount * Integer.BYTES;
+            LocalTime[] times = new LocalTime[stage.resultCount];
+            for (int i = 0; i < times.length; i++) {
+                times[i] = ElapsedTime.toLocalTime(buffer.getLong(finishOffset + i * Long.BYTES));
+            }
+            return times;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //the points each rider earnt at the finish of a stage, matching getRidersRankInStage
+    public int[] getRidersPointsInStage(int stageId) throws IDNotRecognisedException {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            StageView stage = view(stageId);
+            int[] points = new int[stage.resultCount];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = stage.type.getPoints(i);
+            }
+            return points;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //the mountain points each rider earnt on the climbs of a stage, matching getRidersRankInStage
+    public int[] getRidersMountainPointsInStage(int stageId) throws IDNotRecognisedException {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            StageView stage = view(stageId);
+            ByteBuffer mapped = buffer;
+            CheckpointType[] types = new CheckpointType[stage.columns];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = CheckpointType.values()[mapped.get(stage.checkpointsOffset + i * CHECKPOINT_BYTES + Integer.BYTES)];
+            }
+            //the climbs are scored the same way as in the live portal, reading the saved columns where they lie
+            int columnsOffset = stage.riderIdsOffset + stage.resultCount * (Integer.BYTES + Long.BYTES);
+            return ClimbScorer.score(new ClimbScorer.Times() {
+                @Override
+                public int nextEntry(int fromEntry) {return fromEntry < stage.resultCount ? fromEntry : -1;}
+                @Override
+                public long getCheckpointTimeAt(int checkpoint, int entry) {
+                    return mapped.getLong(columnsOffset + (checkpoint * stage.resultCount + entry) * Long.BYTES);
+                }
+                @Override
+                public int getRiderId(int entry) {return mapped.getInt(stage.riderIdsOffset + entry * Integer.BYTES);}
+            }, stage.resultCount, types);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //lets go of the mapping, the archive cannot be queried afterwards
+    @Override
+    public void close() {
+        Lock lock = closeLock.writeLock();
+        lock.lock();
+        try {
+            buffer = null;
+            stageViews.clear();
+            stageRanks.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //called with the read lock held
+    private void checkOpen() {
+        if (buffer == null) {throw new IllegalStateException("archive closed");}
+    }
+
+    private int findRace(int raceId) throws IDNotRecognisedException {
+        checkOpen();
+        Integer offset = raceOffsets.get(raceId);
+        if (offset == null) {throw new IDNotRecognisedException("The entered race ID is not present in the archive.");}
+        return offset;
+    }
+
+    //works out where the sections of a stage record are, the first time the stage is queried
+    private StageView view(int stageId) throws IDNotRecognisedException {
+        checkOpen();
+        Integer start = stageOffsets.get(stageId);
+        if (start == null) {throw new IDNotRecognisedException("The entered stage ID is not present in the archive.");}
+        return stageViews.computeIfAbsent(stageId, id -> readStageView(start));
+    }
+
+    private StageView readStageView(int start) {
+        StageView stage = new StageView();
+        //the stage and race ids
+        int offset = start + 2 * Integer.BYTES;
+        //name and description
+        offset += stringSize(offset);
+        offset += stringSize(offset);
+        stage.type = StageType.values()[buffer.get(offset)];
+        offset += 1;
+        stage.length = buffer.getDouble(offset);
+        offset += Double.BYTES;
+        //start time, if there is one
+        offset += buffer.get(offset) == 1 ? 1 + Long.BYTES + Integer.BYTES : 1;
+        //state
+        offset += 1;
+        stage.checkpointCount = buffer.getInt(offset);
+        stage.checkpointsOffset = offset + Integer.BYTES;
+        offset = stage.checkpointsOffset + stage.checkpointCount * CHECKPOINT_BYTES;
+        stage.resultCount = buffer.getInt(offset);
+        stage.columns = buffer.getInt(offset + Integer.BYTES);
+        stage.riderIdsOffset = offset + 2 * Integer.BYTES;
+        return stage;
+    }
+
+    //finds a rider's position in the stage's rider id column, or null if they have no result
+    private Integer rankOf(int stageId, StageView stage, int riderId) throws IDNotRecognisedException {
+        if (!riderIds.contains(riderId)) {throw new IDNotRecognisedException("The entered rider ID is not present in the archive.");}
+        Map<Integer, Integer> ranks = stageRanks.computeIfAbsent(stageId, id -> {
+            Map<Integer, Integer> built = new HashMap<>();
+            for (int i = 0; i < stage.resultCount; i++) {
+                built.put(buffer.getInt(stage.riderIdsOffset + i * Integer.BYTES), i);
+            }
+            return built;
+        });
+        return ranks.get(riderId);
+    }
+
+    //the number of bytes a string takes up in the file, including its length
+    private int stringSize(int offset) {
+        int length = buffer.getInt(offset);
+        return Integer.BYTES + Math.max(length, 0);
+    }
+
+    private String getString(int offset) {
+        int length = buffer.getInt(offset);
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,127 @@
+package cycling;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MethodStats class, the calls, exceptions and latencies of one portal method.
+ * Calls are counted by the latency histogram itself, so recording a call is a single increment of a histogram bucket.
+ * The exception counters are LongAdders, which spread the count over several cells when threads collide,
+ * so recording never waits on a lock and rarely on another thread.
+ * Exceptions are counted per class, with IDNotRecognisedException also counted on its own,
+ * as it is by far the most common failure of a portal call.
+ * @author Aria Noroozi
+ */
+public class MethodStats implements MethodStatsMXBean {
+
+    /**
+     * the statistics of a method at one point in time. Times are in nanoseconds
+    */
+    public static final class Snapshot {
+        private final String method;
+        private final long calls;
+        private final long exceptions;
+        private final Map<String, Long> exceptionsByClass;
+        private final long p50;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        private Snapshot(String method, long calls, long exceptions, Map<String, Long> exceptionsByClass,
+                long[] percentiles, long max) {
+            this.method = method;
+            this.calls = calls;
+            this.exceptions = exceptions;
+            this.exceptionsByClass = exceptionsByClass;
+            this.p50 = percentiles[0];
+            this.p99 = percentiles[1];
+            this.p999 = percentiles[2];
+            this.max = max;
+        }
+
+        //get methods
+        public String getMethod() {return method;}
+        public long getCalls() {return calls;}
+        public long getExceptions() {return exceptions;}
+        //the exceptions thrown, keyed by the simple name of their class
+        public Map<String, Long> getExceptionsByClass() {return exceptionsByClass;}
+        public long getIdNotRecognised() {return exceptionsByClass.getOrDefault("IDNotRecognisedException", 0L);}
+        public long getP50() {return p50;}
+        public long getP99() {return p99;}
+        public long getP999() {return p999;}
+        public long getMax() {return max;}
+
+        @Override
+        public String toString() {
+            return method + ": calls=" + calls + " exceptions=" + exceptions + " p50=" + p50 + "ns p99=" + p99
+                    + "ns p999=" + p999 + "ns max=" + max + "ns";
+        }
+    }
+
+    private final String method;
+    private final LongAdder exceptions = new LongAdder();
+    private final LongAdder idNotRecognised = new LongAdder();
+    private final Map<Class<?>, LongAdder> exceptionsByClass = new ConcurrentHashMap<>();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    public MethodStats(String method) {
+        this.method = method;
+    }
+
+    /**
+     * records a call that has returned or thrown
+     * @param startNanos the System.nanoTime() the call started at
+    */
+    public void record(long startNanos) {
+        latencies.record(System.nanoTime() - startNanos);
+    }
+
+    //records an exception thrown by a call, which is recorded as a call too once it finishes
+    public void failed(Throwable exception) {
+        exceptions.increment();
+        if (exception instanceof IDNotRecognisedException) {
+            idNotRecognised.increment();
+        }
+        exceptionsByClass.computeIfAbsent(exception.getClass(), type -> new LongAdder()).increment();
+    }
+
+    //the statistics as they stand, with the percentiles read off one copy of the histogram
+    public Snapshot snapshot() {
+        Map<String, Long> byClass = new TreeMap<>();
+        for (Map.Entry<Class<?>, LongAdder> entry : exceptionsByClass.entrySet()) {
+            byClass.merge(entry.getKey().getSimpleName(), entry.getValue().sum(), Long::sum);
+        }
+        return new Snapshot(method, latencies.getCount(), exceptions.sum(), Collections.unmodifiableMap(byClass),
+                latencies.getPercentiles(50, 99, 99.9), latencies.getMax());
+    }
+
+    //the MXBean attributes
+    @Override
+    public String getMethod() {return method;}
+    @Override
+    public long getCalls() {return latencies.getCount();}
+    @Override
+    public long getExceptions() {return exceptions.sum();}
+    @Override
+    public long getIdNotRecognised() {return idNotRecognised.sum();}
+    @Override
+    public long getP50Nanos() {return latencies.getPercentile(50);}
+    @Override
+    public long getP99Nanos() {return latencies.getPercentile(99);}
+    @Override
+    public long getP999Nanos() {return latencies.getPercentile(99.9);}
+    @Override
+    public long getMaxNanos() {return latencies.getMax();}
+
+    //starts the counts and latencies again from nothing
+    @Override
+    public void reset() {
+        exceptions.reset();
+        idNotRecognised.reset();
+        exceptionsByClass.clear();
+        latencies.reset();
+    }
+}
@@ -0,0 +1,18 @@
+package cycling;
+
+/**
+ * MethodStatsMXBean interface, the statistics of one portal method as they are shown over JMX.
+ * Times are in nanoseconds.
+ * @author Aria Noroozi
+ */
+public interface MethodStatsMXBean {
+    String getMethod();
+    long getCalls();
+    long getExceptions();
+    long getIdNotRecognised();
+    long getP50Nanos();
+    long getP99Nanos();
+    long getP999Nanos();
+    long getMaxNanos();
+    void reset();
+}
@@ -0,0 +1,243 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * PortalExporter class, writing rankings and results out of a portal as CSV or JSON lines.
+ * Rows are streamed one at a time from the portal's rankings through a fixed-size buffer straight to an
+ * OutputStream, so exporting a whole season uses the same small amount of memory as exporting one stage.
+ * A WritableByteChannel can be written to by wrapping it with Channels.newOutputStream.
+ * <p>
+ * Times are written as hh:mm:ss, with a fraction of a second if there is one. Hours are not wrapped at a day,
+ * so general classification totals are written in full.
+ * The stream is flushed but not closed once an export is done.
+ * @author Aria Noroozi
+ */
+public class PortalExporter {
+
+    /**
+     * the formats rows can be written in
+    */
+    public enum Format {
+        //comma separated values, with a header row naming the columns
+        CSV,
+        //one JSON object per line
+        JSON_LINES
+    }
+
+    private final CyclingPortalImpl portal;
+    private final Format format;
+
+    /**
+     * @param portal the portal to export from
+     * @param format the format rows are written in
+    */
+    public PortalExporter(CyclingPortalImpl portal, Format format) {
+        this.portal = portal;
+        this.format = format;
+    }
+
+    /**
+     * writes the ranked results of one stage, from first to last
+     * @param stageId the id of the stage
+     * @param out where the rows are written
+     * @throws IDNotRecognisedException if the stage does not exist
+     * @throws IOException if the rows cannot be written
+    */
+    public void exportStageResults(int stageId, OutputStream out) throws IDNotRecognisedException, IOException {
+        RowWriter writer = new RowWriter(out, format, "stageId", "rank", "riderId", "elapsedTime");
+        writeStage(stageId, writer);
+        writer.flush();
+    }
+
+    /**
+     * writes the ranked results of every stage of a race, stage by stage in the order of the race
+     * @param raceId the id of the race
+     * @param out where the rows are written
+     * @throws IDNotRecognisedException if the race does not exist
+     * @throws IOException if the rows cannot be written
+    */
+    public void exportRaceResults(int raceId, OutputStream out) throws IDNotRecognisedException, IOException {
+        RowWriter writer = new RowWriter(out, format, "stageId", "rank", "riderId", "elapsedTime");
+        for (int stageId : portal.getRaceStages(raceId)) {
+            writeStage(stageId, writer);
+        }
+        writer.flush();
+    }
+
+    /**
+     * writes the general classification of a race, from the least total time to the most
+     * @param raceId the id of the race
+     * @param out where the rows are written
+     * @throws IDNotRecognisedException if the race does not exist
+     * @throws IOException if the rows cannot be written
+    */
+    public void exportGeneralClassification(int raceId, OutputStream out) throws IDNotRecognisedException, IOException {
+        RowWriter writer = new RowWriter(out, format, "raceId", "rank", "riderId", "totalTime");
+        portal.forEachGeneralClassificationResult(raceId, (rank, riderId, total) -> {
+            writer.beginRow();
+            writer.number(raceId);
+            writer.number(rank + 1);
+            writer.number(riderId);
+            writer.time(total);
+            writer.endRow();
+        });
+        writer.flush();
+    }
+
+    /**
+     * writes every stage result of one rider in order of stage id, read from the rider's history
+     * @param riderId the id of the rider
+     * @param out where the rows are written
+     * @throws IDNotRecognisedException if the rider does not exist
+     * @throws IOException if the rows cannot be written
+    */
+    public void exportRiderResults(int riderId, OutputStream out) throws IDNotRecognisedException, IOException {
+        RowWriter writer = new RowWriter(out, format, "riderId", "raceId", "stageId", "rank", "elapsedTime");
+        for (RiderHistory.Result result : portal.getRiderHistory(riderId)) {
+            writer.beginRow();
+            writer.number(riderId);
+            writer.number(result.getRaceId());
+            writer.number(result.getStageId());
+            writer.number(result.getRank() + 1);
+            writer.time(result.getElapsed());
+            writer.endRow();
+        }
+        writer.flush();
+    }
+
+    private void writeStage(int stageId, RowWriter writer) throws IDNotRecognisedException, IOException {
+        portal.forEachRankedResultInStage(stageId, (rank, riderId, elapsed) -> {
+            writer.beginRow();
+            writer.number(stageId);
+            writer.number(rank + 1);
+            writer.number(riderId);
+            writer.time(elapsed);
+            writer.endRow();
+        });
+    }
+
+    //writes rows as ASCII straight into a fixed buffer, which is drained to the stream whenever it fills up
+    private static class RowWriter {
+        //room for the longest value a single call can write
+        private static final int MAX_VALUE_BYTES = 64;
+
+        private final OutputStream out;
+        private final boolean json;
+        //for JSON lines, the quoted name and colon written before each value
+        private final byte[][] keys;
+        private final byte[] buffer = new byte[8192];
+        private int position = 0;
+        private int column = 0;
+
+        RowWriter(OutputStream out, Format format, String... columns) throws IOException {
+            this.out = out;
+            this.json = format == Format.JSON_LINES;
+            keys = new byte[columns.length][];
+            for (int i = 0; i < columns.length; i++) {
+                keys[i] = ("\"" + columns[i] + "\":").getBytes(StandardCharsets.US_ASCII);
+            }
+            if (!json) {
+                byte[] header = (String.join(",", columns) + "\n").getBytes(StandardCharsets.US_ASCII);
+                ensure(header.length);
+                System.arraycopy(header, 0, buffer, position, header.length);
+                position += header.length;
+            }
+        }
+
+        void beginRow() throws IOException {
+            column = 0;
+            if (json) {
+                ensure(1);
+                buffer[position++] = '{';
+            }
+        }
+
+        void endRow() throws IOException {
+            ensure(2);
+            if (json) {
+                buffer[position++] = '}';
+            }
+            buffer[position++] = '\n';
+        }
+
+        void number(long value) throws IOException {
+            separate();
+            writeDigits(value, 1);
+        }
+
+        //nanoseconds written as hh:mm:ss, followed by the fraction of a second in 3, 6 or 9 digits if there is one
+        void time(long nanos) throws IOException {
+            separate();
+            if (json) {
+                buffer[position++] = '"';
+            }
+            long seconds = nanos / 1_000_000_000L;
+            int nano = (int) (nanos % 1_000_000_000L);
+            writeDigits(seconds / 3600, 2);
+            buffer[position++] = ':';
+            writeDigits(seconds / 60 % 60, 2);
+            buffer[position++] = ':';
+            writeDigits(seconds % 60, 2);
+            if (nano != 0) {
+                buffer[position++] = '.';
+                if (nano % 1_000_000 == 0) {
+                    writeDigits(nano / 1_000_000, 3);
+                } else if (nano % 1000 == 0) {
+                    writeDigits(nano / 1000, 6);
+                } else {
+                    writeDigits(nano, 9);
+                }
+            }
+            if (json) {
+                buffer[position++] = '"';
+            }
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        //writes the comma before a value, and its name for JSON lines, and makes room for the value
+        private void separate() throws IOException {
+            byte[] key = json ? keys[column] : null;
+            ensure(1 + (key == null ? 0 : key.length) + MAX_VALUE_BYTES);
+            if (column > 0) {
+                buffer[position++] = ',';
+            }
+            if (key != null) {
+                System.arraycopy(key, 0, buffer, position, key.length);
+                position += key.length;
+            }
+            column++;
+        }
+
+        //writes a non-negative number, padded with zeros to at least the given width
+        private void writeDigits(long value, int width) {
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            int length = Math.max(digits, width);
+            for (int i = position + length - 1; i >= position; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            position += length;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (position + bytes > buffer.length) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
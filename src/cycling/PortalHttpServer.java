@@ -0,0 +1,333 @@
+package cycling;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PortalHttpServer class, serving a portal's races, stage rankings and points as JSON over HTTP,
+ * using the HTTP server built into the JDK.
+ * <p>
+ * The server answers GET requests only:
+ * <ul>
+ * <li>/races/{id}: the race's details</li>
+ * <li>/races/{id}/stages: the ids of the race's stages, in order</li>
+ * <li>/stages/{id}/ranks: the ids of the stage's riders, from first to last</li>
+ * <li>/stages/{id}/times: the riders' adjusted elapsed times, in the same order</li>
+ * <li>/stages/{id}/points and /stages/{id}/mountain-points: the riders' points, in the same order</li>
+ * <li>/stages/{id}/events: a stream of server-sent events, a snapshot of the ranking followed by a rank delta
+ *     for every result registered or deleted, as laid out in StageEventBroadcaster</li>
+ * </ul>
+ * An id that does not exist is answered with 404 and the portal's message.
+ * <p>
+ * Stage bodies are serialised once and the bytes are sent to every request after that,
+ * until the stage's results version changes or the stage is replaced, so a burst of fans refreshing
+ * a stage's ranking costs one serialisation. Connections are accepted by the server's own selector thread,
+ * so idle connections cost no thread, and requests are run on virtual threads when the JVM has them,
+ * or on a fixed pool of threads when it does not. Event streams are handed to threads of their own,
+ * virtual where possible, so long-lived streams never take up the threads answering other requests.
+ * Virtual threads need a JDK 21 or later to run on. The portal is built for Java 17, so on a JDK 17 to 20
+ * every stream holds a platform thread for as long as it is open, and at most MAX_STREAM_THREADS streams
+ * are served at once; a stream asked for beyond that is answered with 503.
+ * <p>
+ * The portal must be safe to read while it is written to, e.g. a ConcurrentCyclingPortal, if results are
+ * registered while the server is running.
+ * @author Aria Noroozi
+ */
+public class PortalHttpServer implements AutoCloseable {
+    //the most connections waiting to be accepted
+    private static final int BACKLOG = 4096;
+    //the threads per core used when the JVM has no virtual threads
+    private static final int THREADS_PER_CORE = 16;
+    //the most event streams open at once when the JVM has no virtual threads, each taking a platform thread
+    public static final int MAX_STREAM_THREADS = 512;
+    private static final String[] STAGE_ENDPOINTS = {"ranks", "times", "points", "mountain-points"};
+    //how long an event stream is left quiet before a comment is sent to keep the connection open
+    private static final long KEEPALIVE_SECONDS = 15;
+    private static final byte[] KEEPALIVE = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    //a stage body, kept with the stage and results version it was made from. The stage is only held weakly,
+    //so a removed stage is not kept alive by a body nobody asks for again
+    private static final class CachedBody {
+        private final WeakReference<Stage> stage;
+        private final long version;
+        private final byte[] body;
+
+        CachedBody(Stage stage, long version, byte[] body) {
+            this.stage = new WeakReference<>(stage);
+            this.version = version;
+            this.body = body;
+        }
+    }
+
+    private final MiniCyclingPortalImpl portal;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ExecutorService streams;
+    private final StageEventBroadcaster events = new StageEventBroadcaster();
+    //stage bodies, keyed by the stage id and the index of the endpoint in STAGE_ENDPOINTS
+    private final Map<Long, CachedBody> stageBodies = new ConcurrentHashMap<>();
+
+    /**
+     * creates the server, which does not take requests until it is started
+     * @param portal the portal to serve
+     * @param address the address to listen on, a port of 0 picks a free port
+     * @throws IOException if the address cannot be bound
+    */
+    public PortalHttpServer(MiniCyclingPortalImpl portal, InetSocketAddress address) throws IOException {
+        this.portal = portal;
+        server = HttpServer.create(address, BACKLOG);
+        ExecutorService virtualThreads = newVirtualThreadExecutor();
+        executor = virtualThreads != null ? virtualThreads
+                : Executors.newFixedThreadPool(THREADS_PER_CORE * Runtime.getRuntime().availableProcessors());
+        virtualThreads = newVirtualThreadExecutor();
+        //a stream is never queued behind another, it either gets a thread straight away or is turned down
+        streams = virtualThreads != null ? virtualThreads : new ThreadPoolExecutor(0, MAX_STREAM_THREADS,
+                60, TimeUnit.SECONDS, new SynchronousQueue<>());
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        portal.addStageResultListener(events);
+    }
+
+    public void start() {server.start();}
+
+    //the port the server is listening on
+    public int getPort() {return server.getAddress().getPort();}
+
+    //stops taking requests and ends every event stream, waiting up to a second for the requests already running to finish
+    @Override
+    public void close() {
+        portal.removeStageResultListener(events);
+        events.close();
+        server.stop(1);
+        executor.shutdown();
+        streams.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+            streams.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        //an event stream is handed to a thread of its own, which closes the exchange once the stream ends
+        boolean streaming = false;
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("Only GET requests are served."));
+                return;
+            }
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            //the path starts with a slash, so parts[0] is always empty
+            if (parts.length < 3 || parts.length > 4) {
+                send(exchange, 404, error("There is nothing at this path."));
+                return;
+            }
+            int id;
+            try {
+                id = Integer.parseInt(parts[2]);
+            } catch (NumberFormatException e) {
+                send(exchange, 400, error("The id must be a whole number."));
+                return;
+            }
+            String endpoint = parts.length == 4 ? parts[3] : null;
+            byte[] body;
+            if (parts[1].equals("races") && endpoint == null) {
+                body = ("{\"raceId\":" + id + ",\"details\":" + quote(portal.viewRaceDetails(id)) + "}")
+                        .getBytes(StandardCharsets.UTF_8);
+            } else if (parts[1].equals("races") && endpoint.equals("stages")) {
+                body = array(portal.getRaceStages(id));
+            } else if (parts[1].equals("stages") && endpoint != null && indexOf(endpoint) >= 0) {
+                body = stageBody(id, indexOf(endpoint));
+            } else if (parts[1].equals("stages") && "events".equals(endpoint)) {
+                Stage stage = portal.getRegistry().getStage(id);
+                if (stage == null) {
+                    throw new IDNotRecognisedException("The entered stage ID is not present in any of our active races.");
+                }
+                try {
+                    streams.execute(() -> streamEvents(exchange, id, stage));
+                    streaming = true;
+                } catch (RejectedExecutionException e) {
+                    send(exchange, 503, error(streams.isShutdown() ? "The server is shutting down."
+                            : "Too many event streams are open, try again later."));
+                }
+                return;
+            } else {
+                send(exchange, 404, error("There is nothing at this path."));
+                return;
+            }
+            send(exchange, 200, body);
+        } catch (IDNotRecognisedException e) {
+            send(exchange, 404, error(e.getMessage()));
+        } finally {
+            if (!streaming) {
+                exchange.close();
+            }
+        }
+    }
+
+    //sends a stage's ranking, then every change to it, until the client goes, the stage is removed or the server is closed
+    private void streamEvents(HttpExchange exchange, int stageId, Stage stage) {
+        List<byte[]> pending = new ArrayList<>();
+        try (StageEventBroadcaster.Subscription subscription = events.subscribe(stageId);
+                OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            subscription.resync();
+            out.write(StageEventBroadcaster.snapshot(portal, stageId));
+            out.flush();
+            while (!events.isClosed()) {
+                pending.clear();
+                if (!subscription.poll(pending, KEEPALIVE_SECONDS, TimeUnit.SECONDS)) {
+                    //too many events were missed to send them all, so the subscriber starts again from a fresh snapshot
+                    subscription.resync();
+                    out.write(StageEventBroadcaster.snapshot(portal, stageId));
+                } else if (pending.isEmpty()) {
+                    //the stage is only checked while the stream is quiet, as a removed stage sends no more events
+                    if (portal.getRegistry().getStage(stageId) != stage) {
+                        out.write(StageEventBroadcaster.encode("removed", "{\"stageId\":" + stageId + "}"));
+                        break;
+                    }
+                    out.write(KEEPALIVE);
+                }
+                for (byte[] event : pending) {
+                    out.write(event);
+                }
+                out.flush();
+            }
+        } catch (IOException | IDNotRecognisedException e) {
+            //the client has gone, or the stage was removed while a snapshot was being taken
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    //the body of a stage endpoint, made again only if the stage's results have changed since it was last made
+    private byte[] stageBody(int stageId, int endpoint) throws IDNotRecognisedException {
+        long key = ((long) stageId << 2) | endpoint;
+        Stage stage = portal.getRegistry().getStage(stageId);
+        if (stage == null) {
+            stageBodies.remove(key);
+            throw new IDNotRecognisedException("The entered stage ID is not present in any of our active races.");
+        }
+        //the version is read before the body is made, so a body is never older than the version it is kept under
+        long version = portal.getStageResultsVersion(stageId);
+        CachedBody cached = stageBodies.get(key);
+        if (cached != null && cached.stage.get() == stage && cached.version == version) {
+            return cached.body;
+        }
+        byte[] body;
+        switch (endpoint) {
+            case 0:
+                body = array(portal.getRidersRankInStage(stageId));
+                break;
+            case 1:
+                body = times(portal.getRankedAdjustedElapsedTimesInStage(stageId));
+                break;
+            case 2:
+                body = array(portal.getRidersPointsInStage(stageId));
+                break;
+            default:
+                body = array(portal.getRidersMountainPointsInStage(stageId));
+                break;
+        }
+        stageBodies.put(key, new CachedBody(stage, version, body));
+        return body;
+    }
+
+    private static int indexOf(String endpoint) {
+        for (int i = 0; i < STAGE_ENDPOINTS.length; i++) {
+            if (STAGE_ENDPOINTS[i].equals(endpoint)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] array(int[] values) {
+        StringBuilder json = new StringBuilder(values.length * 6 + 2).append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(values[i]);
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    //times are written as hh:mm:ss, with a fraction of a second if there is one
+    private static byte[] times(LocalTime[] values) {
+        StringBuilder json = new StringBuilder(values.length * 11 + 2).append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(DateTimeFormatter.ISO_LOCAL_TIME.format(values[i])).append('"');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] error(String message) {
+        return ("{\"error\":" + quote(message) + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    //a string as a JSON string literal, or null
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c == '\n') {
+                json.append("\\n");
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    //virtual threads are looked up by name, so the portal still builds for Java 17 and runs on JDKs from before
+    //they were added in JDK 21. Returns null if the JVM has none
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
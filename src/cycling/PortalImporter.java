@@ -0,0 +1,355 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PortalImporter class, loading teams, riders and stage results into a portal from CSV or TSV files.
+ * Files are read one record at a time through a fixed-size buffer, so the memory used does not grow with the file.
+ * Every row is checked on its own, and a bad row is reported with its line number instead of stopping the import.
+ * Stage results are gathered into batches of consecutive rows for the same stage and registered with
+ * registerStageResultsBatch, so each stage's rankings are updated once per batch rather than once per row.
+ * Everything goes through the portal's public methods, so a journaled or concurrent portal journals and locks
+ * the imported data as it would for any other call.
+ * <p>
+ * The rows expected are:
+ * <ul>
+ * <li>teams: name, description</li>
+ * <li>riders: team id, name, year of birth</li>
+ * <li>stage results: stage id, rider id, then the start, checkpoint and finish times, as registerRiderResultsInStage
+ *     takes them, e.g. 09:00:00</li>
+ * </ul>
+ * Fields may be quoted with double quotes. Blank lines and lines starting with # are skipped.
+ * @author Aria Noroozi
+ */
+public class PortalImporter {
+    //the most result rows registered in one batch
+    private static final int BATCH_SIZE = 1024;
+    //the longest record accepted, in characters. Longer records are reported and skipped
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+    //the most row errors kept in a report, any more are only counted
+    private static final int MAX_ERRORS = 1000;
+
+    /**
+     * a row that could not be imported
+    */
+    public static class RowError {
+        private final int line;
+        private final String message;
+
+        RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        //get methods
+        public int getLine() {return line;}
+        public String getMessage() {return message;}
+
+        @Override
+        public String toString() {return "line " + line + ": " + message;}
+    }
+
+    /**
+     * the outcome of importing one file
+    */
+    public static class Report {
+        private int rows;
+        private int imported;
+        private int failed;
+        private List<RowError> errors = new ArrayList<>();
+
+        //get methods
+        public int getRows() {return rows;}
+        public int getImported() {return imported;}
+        public int getFailed() {return failed;}
+        //the first errors of the import. Rows turned down by the portal are reported once their batch is registered
+        public List<RowError> getErrors() {return Collections.unmodifiableList(errors);}
+
+        private void fail(int line, String message) {
+            failed++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(new RowError(line, message));
+            }
+        }
+    }
+
+    private final MiniCyclingPortalImpl portal;
+    private final char delimiter;
+    private final boolean header;
+
+    /**
+     * @param portal the portal the rows are imported into
+     * @param delimiter the character between fields, ',' for CSV or '\t' for TSV
+     * @param header whether the first record of each file is a header to be skipped
+    */
+    public PortalImporter(MiniCyclingPortalImpl portal, char delimiter, boolean header) {
+        this.portal = portal;
+        this.delimiter = delimiter;
+        this.header = header;
+    }
+
+    /**
+     * creates a team for every row
+     * @param in the file to read, which is not closed
+     * @return the rows imported and the errors of the ones that were not
+     * @throws IOException if the file cannot be read
+    */
+    public Report importTeams(Reader in) throws IOException {
+        Report report = new Report();
+        RecordReader reader = new RecordReader(in, delimiter);
+        List<String> fields;
+        while ((fields = nextRow(reader, report)) != null) {
+            if (fields.size() > 2) {
+                report.fail(reader.line, "A team row has a name and a description only.");
+                continue;
+            }
+            try {
+                portal.createTeam(fields.get(0), fields.size() > 1 ? fields.get(1) : null);
+                report.imported++;
+            } catch (InvalidNameException | IllegalNameException e) {
+                report.fail(reader.line, e.getMessage());
+            }
+        }
+        return report;
+    }
+
+    /**
+     * creates a rider for every row
+     * @param in the file to read, which is not closed
+     * @return the rows imported and the errors of the ones that were not
+     * @throws IOException if the file cannot be read
+    */
+    public Report importRiders(Reader in) throws IOException {
+        Report report = new Report();
+        RecordReader reader = new RecordReader(in, delimiter);
+        List<String> fields;
+        while ((fields = nextRow(reader, report)) != null) {
+            if (fields.size() != 3) {
+                report.fail(reader.line, "A rider row has a team id, a name and a year of birth.");
+                continue;
+            }
+            try {
+                portal.createRider(parseId(fields.get(0)), fields.get(1), parseId(fields.get(2)));
+                report.imported++;
+            } catch (NumberFormatException e) {
+                report.fail(reader.line, "The team id and year of birth must be whole numbers.");
+            } catch (IDNotRecognisedException | IllegalArgumentException e) {
+                report.fail(reader.line, e.getMessage());
+            }
+        }
+        return report;
+    }
+
+    /**
+     * registers a result for every row. Consecutive rows for the same stage are registered as one batch
+     * @param in the file to read, which is not closed
+     * @return the rows imported and the errors of the ones that were not
+     * @throws IOException if the file cannot be read
+    */
+    public Report importStageResults(Reader in) throws IOException {
+        Report report = new Report();
+        RecordReader reader = new RecordReader(in, delimiter);
+        //the batch being gathered, with the line each rider's row came from
+        Map<Integer, LocalTime[]> batch = new LinkedHashMap<>();
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        int batchStageId = -1;
+        List<String> fields;
+        while ((fields = nextRow(reader, report)) != null) {
+            if (fields.size() < 4) {
+                report.fail(reader.line, "A result row has a stage id, a rider id, and at least a start and finish time.");
+                continue;
+            }
+            int stageId;
+            int riderId;
+            LocalTime[] times = new LocalTime[fields.size() - 2];
+            try {
+                stageId = parseId(fields.get(0));
+                riderId = parseId(fields.get(1));
+            } catch (NumberFormatException e) {
+                report.fail(reader.line, "The stage and rider ids must be whole numbers.");
+                continue;
+            }
+            try {
+                for (int i = 0; i < times.length; i++) {
+                    times[i] = LocalTime.parse(fields.get(i + 2).trim());
+                }
+            } catch (DateTimeParseException e) {
+                report.fail(reader.line, "The times must be written as hh:mm:ss, e.g. 09:00:00.");
+                continue;
+            }
+
+            if (stageId != batchStageId || batch.size() == BATCH_SIZE) {
+                registerBatch(batchStageId, batch, lines, report);
+                batchStageId = stageId;
+            }
+            if (batch.containsKey(riderId)) {
+                report.fail(reader.line, "A result has already been entered for rider " + riderId + " on line " + lines.get(riderId) + ".");
+                continue;
+            }
+            batch.put(riderId, times);
+            lines.put(riderId, reader.line);
+        }
+        registerBatch(batchStageId, batch, lines, report);
+        return report;
+    }
+
+    //registers a gathered batch. If the batch is turned down, its rows are registered one at a time instead,
+    //so that only the rows at fault are reported
+    private void registerBatch(int stageId, Map<Integer, LocalTime[]> batch, Map<Integer, Integer> lines, Report report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            portal.registerStageResultsBatch(stageId, batch);
+            report.imported += batch.size();
+        } catch (IDNotRecognisedException | DuplicatedResultException | InvalidCheckpointTimesException
+                | InvalidStageStateException e) {
+            for (Map.Entry<Integer, LocalTime[]> entry : batch.entrySet()) {
+                try {
+                    portal.registerRiderResultsInStage(stageId, entry.getKey(), entry.getValue());
+                    report.imported++;
+                } catch (IDNotRecognisedException | DuplicatedResultException | InvalidCheckpointTimesException
+                        | InvalidStageStateException rowError) {
+                    report.fail(lines.get(entry.getKey()), rowError.getMessage());
+                }
+            }
+        }
+        batch.clear();
+        lines.clear();
+    }
+
+    //reads the next row to import, skipping the header, blank lines, comments and records that are too long
+    private List<String> nextRow(RecordReader reader, Report report) throws IOException {
+        List<String> fields;
+        while ((fields = reader.next()) != null) {
+            if (header && reader.records == 1) {
+                continue;
+            }
+            if ((fields.size() == 1 && fields.get(0).trim().isEmpty()) || fields.get(0).startsWith("#")) {
+                continue;
+            }
+            report.rows++;
+            if (reader.tooLong) {
+                report.fail(reader.line, "The row is longer than " + MAX_RECORD_LENGTH + " characters.");
+                continue;
+            }
+            return fields;
+        }
+        return null;
+    }
+
+    private static int parseId(String field) {
+        return Integer.parseInt(field.trim());
+    }
+
+    //splits its input into records of fields, reading through a fixed-size buffer
+    private static class RecordReader {
+        private final Reader in;
+        private final char delimiter;
+        private final char[] buffer = new char[8192];
+        private int position = 0;
+        private int limit = 0;
+        private final StringBuilder field = new StringBuilder();
+        private final List<String> fields = new ArrayList<>();
+        //the line the last record started on, the line the next one starts on, and the number of records read
+        private int line = 0;
+        private int nextLine = 1;
+        private int records = 0;
+        //set if the last record was longer than MAX_RECORD_LENGTH, in which case the rest of it was dropped
+        private boolean tooLong;
+
+        RecordReader(Reader in, char delimiter) {
+            this.in = in;
+            this.delimiter = delimiter;
+        }
+
+        //reads the next record, or returns null at the end of the input. The list is reused by the next call
+        List<String> next() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            line = nextLine;
+            tooLong = false;
+            int length = 0;
+            boolean quoted = false;
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            while (c != -1) {
+                //every character counts towards the length, so a record of nothing but delimiters is bounded too
+                if (++length > MAX_RECORD_LENGTH) {
+                    tooLong = true;
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            read();
+                        } else {
+                            quoted = false;
+                            c = read();
+                            continue;
+                        }
+                    } else if (c == '\n') {
+                        nextLine++;
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                    c = read();
+                    continue;
+                } else if (c == delimiter) {
+                    if (!tooLong) {
+                        fields.add(field.toString());
+                        field.setLength(0);
+                    }
+                    c = read();
+                    continue;
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r' && peek() == '\n') {
+                        read();
+                    }
+                    nextLine++;
+                    break;
+                }
+                if (!tooLong) {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+            fields.add(field.toString());
+            records++;
+            return fields;
+        }
+
+        private int read() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position++];
+        }
+
+        private int peek() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position];
+        }
+
+        private boolean fill() throws IOException {
+            int read = in.read(buffer, 0, buffer.length);
+            if (read <= 0) {
+                return false;
+            }
+            position = 0;
+            limit = read;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * PortalJournal class, an append-only log of the changes made to a portal since its last snapshot.
+ * A journal lives in a directory of numbered segment files and snapshots: snapshot-N.snap holds the portal
+ * as it was when segment-N.log was started, so a portal is recovered by loading the newest snapshot
+ * and replaying the segments from its number onwards.
+ * <p>
+ * Every record is its length, a CRC32 of its contents, then an operation code and the operation's arguments.
+ * A record cut short by a crash fails its check and is dropped along with anything after it.
+ * Appending only copies a record into a buffer; commit writes the buffer out and forces it to disk, and threads
+ * that commit while another thread is forcing share the next write and force between them (group commit).
+ * Neither appending nor starting a new segment touches the disk, so both can be done while the portal is locked.
+ * @author Aria Noroozi
+ */
+public class PortalJournal implements AutoCloseable {
+    //operation codes, one per portal method that changes the portal
+    static final byte CREATE_RACE = 1;
+    static final byte REMOVE_RACE = 2;
+    static final byte ADD_STAGE = 3;
+    static final byte REMOVE_STAGE = 4;
+    static final byte ADD_CLIMB = 5;
+    static final byte ADD_SPRINT = 6;
+    static final byte REMOVE_CHECKPOINT = 7;
+    static final byte CONCLUDE_STAGE = 8;
+    static final byte CREATE_TEAM = 9;
+    static final byte REMOVE_TEAM = 10;
+    static final byte CREATE_RIDER = 11;
+    static final byte REMOVE_RIDER = 12;
+    static final byte REGISTER_RESULTS = 13;
+    static final byte DELETE_RESULTS = 14;
+    static final byte ERASE = 15;
+    static final byte REGISTER_BATCH = 16;
+
+    //the length and checksum in front of every record
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+
+    /**
+     * Record class, one operation being encoded for the journal.
+     */
+    static class Record {
+        private ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        Record(byte operation) {
+            buffer.put(operation);
+        }
+
+        //a create's id is only known once the change is applied, so a placeholder is put straight after the operation code
+        Record reserveId() {return putInt(0);}
+        Record setId(int id) {buffer.putInt(1, id); return this;}
+
+        Record putByte(int value) {ensureCapacity(1); buffer.put((byte) value); return this;}
+        Record putInt(int value) {ensureCapacity(Integer.BYTES); buffer.putInt(value); return this;}
+        Record putLong(long value) {ensureCapacity(Long.BYTES); buffer.putLong(value); return this;}
+        Record putDouble(double value) {ensureCapacity(Double.BYTES); buffer.putDouble(value); return this;}
+
+        //strings are written the same way as in a snapshot, a length of -1 standing for null
+        Record putString(String value) {
+            if (value == null) {
+                return putInt(-1);
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensureCapacity(bytes.length);
+            buffer.put(bytes);
+            return this;
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+    }
+
+    private final Path directory;
+    private final Object lock = new Object();
+    //the segment records are appended to, which is ahead of the file being written while a rotation is pending
+    private int segment;
+    //bytes in the current segment, including those not yet written out
+    private long segmentSize;
+    //the file being written and its number, only used by the thread writing
+    private FileChannel channel;
+    private int channelSegment;
+
+    //records waiting to be written, and the buffer of the last write, kept for reuse
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    //the positions in pending where a new segment starts, and the list of the last write, kept for reuse
+    private List<Integer> rotations = new ArrayList<>();
+    private List<Integer> spareRotations = new ArrayList<>();
+    //sequence numbers of the last record appended and the last record forced to disk
+    private long appended = 0;
+    private long durable = 0;
+    private boolean flushing = false;
+    //once a write or force fails, nothing after it can be trusted to be on disk
+    private IOException failure;
+
+    private PortalJournal(Path directory, int segment, FileChannel channel, long segmentSize) {
+        this.directory = directory;
+        this.segment = segment;
+        this.channel = channel;
+        this.channelSegment = segment;
+        this.segmentSize = segmentSize;
+    }
+
+    //get methods
+    public Path getDirectory() {return directory;}
+    public int getSegment() {synchronized (lock) {return segment;}}
+    public long getSegmentSize() {synchronized (lock) {return segmentSize;}}
+
+    /**
+     * brings a portal up to date with a journal directory and opens the journal for appending.
+     * The newest snapshot is loaded, or the portal is erased if there is none, then the segments are replayed in order.
+     * A damaged record at the end of the last segment is taken to be a write cut short and is cut off.
+     * @param directory the journal directory, created if it does not exist
+     * @param portal the portal to recover into, which must not itself be writing to the journal
+     * @return the journal, positioned after the last good record
+     * @throws IOException if the directory cannot be read or a record before the end is damaged
+    */
+    public static PortalJournal recover(Path directory, MiniCyclingPortalImpl portal) throws IOException {
+        Files.createDirectories(directory);
+        int snapshot = -1;
+        Set<Integer> segments = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    //left over from a snapshot that was never finished
+                    Files.delete(file);
+                }
+                else if (name.startsWith("snapshot-") && name.endsWith(".snap")) {
+                    snapshot = Math.max(snapshot, fileNumber(name));
+                }
+                else if (name.startsWith("segment-") && name.endsWith(".log")) {
+                    segments.add(fileNumber(name));
+                }
+            }
+        }
+
+        if (snapshot >= 0) {
+            try {
+                portal.loadCyclingPortal(snapshotPath(directory, snapshot).toString());
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+        else {
+            //ids are handed out from the start again, the same as when the journal was first written
+            portal.eraseCyclingPortal();
+        }
+
+        int first = Math.max(snapshot, 0);
+        int last = first;
+        long validLength = 0;
+        for (int number = first; segments.contains(number); number++) {
+            Path path = segmentPath(directory, number);
+            validLength = replay(path, portal);
+            if (validLength < Files.size(path) && segments.contains(number + 1)) {
+                throw new IOException(path + " is damaged before its end.");
+            }
+            last = number;
+        }
+        for (int number : segments) {
+            if (number > last) {
+                throw new IOException(segmentPath(directory, number) + " does not follow on from the segments before it.");
+            }
+        }
+
+        FileChannel channel = FileChannel.open(segmentPath(directory, last), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > validLength) {
+            channel.truncate(validLength);
+            channel.force(false);
+        }
+        channel.position(validLength);
+        PortalJournal journal = new PortalJournal(directory, last, channel, validLength);
+        journal.forceDirectory();
+        journal.deleteBefore(first);
+        return journal;
+    }
+
+    /**
+     * checks that nothing has failed to be written so far, so a change can be made and then appended
+     * @throws IOException if an earlier write failed
+    */
+    public void checkWritable() throws IOException {
+        synchronized (lock) {
+            if (failure != null) {throw new IOException("The journal could not be written to.", failure);}
+        }
+    }
+
+    /**
+     * adds a record to the end of the journal. The record is only copied into memory, so this cannot fail;
+     * it is not on disk until commit has been called with its sequence number, which reports any failed write
+     * @param record the encoded operation
+     * @return the sequence number of the record
+    */
+    public long append(Record record) {
+        ByteBuffer payload = record.buffer.duplicate().flip();
+        CRC32 checksum = new CRC32();
+        checksum.update(payload.duplicate());
+        synchronized (lock) {
+            int size = RECORD_HEADER + payload.remaining();
+            if (pending.remaining() < size) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            pending.putInt(payload.remaining());
+            pending.putInt((int) checksum.getValue());
+            pending.put(payload);
+            segmentSize += size;
+            return ++appended;
+        }
+    }
+
+    /**
+     * waits until a record and every record before it are on disk.
+     * If no other thread is writing, this thread writes out everything appended so far and forces it,
+     * otherwise it waits for that thread and then writes whatever has built up in the meantime.
+     * @param sequence the sequence number returned by append
+     * @throws IOException if the records could not be written or forced
+    */
+    public void commit(long sequence) throws IOException {
+        ByteBuffer batch;
+        List<Integer> batchRotations;
+        long upTo;
+        synchronized (lock) {
+            while (true) {
+                if (failure != null) {throw new IOException("The journal could not be written to.", failure);}
+                //a rotation is written out even with no records after it, so flush always leaves the new segment on disk
+                if (durable >= sequence && rotations.isEmpty()) {
+                    return;
+                }
+                if (!flushing) {
+                    break;
+                }
+                awaitFlush();
+            }
+            flushing = true;
+            batch = swapPending();
+            batchRotations = swapRotations();
+            upTo = appended;
+        }
+        IOException error = null;
+        try {
+            write(batch, batchRotations);
+        } catch (IOException e) {
+            error = e;
+        }
+        finishFlush(batch, batchRotations, upTo, error);
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * ends the current segment, so records appended from now on go to the next one. Called before a snapshot is taken,
+     * with no records being appended, so the snapshot covers exactly the segments before the new one.
+     * The segment file is only created when the records in front of it are written, by the next commit
+     * @return the number of the new segment
+    */
+    public int rotate() {
+        synchronized (lock) {
+            rotations.add(pending.position());
+            segment++;
+            segmentSize = 0;
+            return segment;
+        }
+    }
+
+    /**
+     * writes out and forces everything appended so far, including any segment started by rotate
+     * @throws IOException if the records could not be written or forced
+    */
+    public void flush() throws IOException {
+        long last;
+        synchronized (lock) {
+            last = appended;
+        }
+        commit(last);
+    }
+
+    //where a snapshot for a segment is written before it is moved into place
+    public Path getSnapshotTempPath(int number) {
+        return directory.resolve(String.format("snapshot-%08d.snap.tmp", number));
+    }
+
+    /**
+     * moves a finished snapshot into place and deletes the snapshots and segments it replaces
+     * @param number the segment the snapshot was taken at, as returned by rotate
+     * @throws IOException if the snapshot could not be forced or moved
+    */
+    public void installSnapshot(int number) throws IOException {
+        //the snapshot replaces the segments before its own, which must be on disk first
+        flush();
+        Path temp = getSnapshotTempPath(number);
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        Files.move(temp, snapshotPath(directory, number), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+        deleteBefore(number);
+    }
+
+    //writes out anything still pending and closes the current segment
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer swapPending() {
+        ByteBuffer batch = pending;
+        pending = spare;
+        spare = null;
+        return batch;
+    }
+
+    private List<Integer> swapRotations() {
+        List<Integer> batchRotations = rotations;
+        rotations = spareRotations;
+        spareRotations = null;
+        return batchRotations;
+    }
+
+    //hands the written buffer back for reuse and wakes the threads waiting on the write
+    private void finishFlush(ByteBuffer batch, List<Integer> batchRotations, long upTo, IOException error) {
+        synchronized (lock) {
+            if (error == null) {
+                durable = upTo;
+            }
+            else {
+                failure = error;
+            }
+            batch.clear();
+            spare = batch;
+            batchRotations.clear();
+            spareRotations = batchRotations;
+            flushing = false;
+            lock.notifyAll();
+        }
+    }
+
+    private void awaitFlush() throws InterruptedIOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal to be written.");
+        }
+    }
+
+    //writes a batch of records, finishing the current segment file and starting the next at each rotation in it
+    private void write(ByteBuffer batch, List<Integer> batchRotations) throws IOException {
+        int end = batch.position();
+        batch.flip();
+        for (int rotation : batchRotations) {
+            batch.limit(rotation);
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+            FileChannel next = FileChannel.open(segmentPath(directory, channelSegment + 1), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            forceDirectory();
+            channel.close();
+            channel = next;
+            channelSegment++;
+        }
+        batch.limit(end);
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        channel.force(false);
+    }
+
+    //makes new and renamed files in the directory survive a crash. Not every platform allows a directory to be forced
+    private void forceDirectory() {
+        try (FileChannel file = FileChannel.open(directory, StandardOpenOption.READ)) {
+            file.force(true);
+        } catch (IOException e) {
+            //the files themselves have been forced, which is all that can be done here
+        }
+    }
+
+    private void deleteBefore(int number) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean journalFile = (name.startsWith("snapshot-") && name.endsWith(".snap"))
+                        || (name.startsWith("segment-") && name.endsWith(".log"));
+                if (journalFile && fileNumber(name) < number) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static Path segmentPath(Path directory, int number) {
+        return directory.resolve(String.format("segment-%08d.log", number));
+    }
+
+    private static Path snapshotPath(Path directory, int number) {
+        return directory.resolve(String.format("snapshot-%08d.snap", number));
+    }
+
+    //the number between the dash and the extension of a journal file name
+    private static int fileNumber(String name) {
+        return Integer.parseInt(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+    }
+
+    /**
+     * applies every record of a segment to a portal, stopping at the first record that is cut short or fails its check
+     * @return the length of the segment up to the end of the last good record
+    */
+    private static long replay(Path path, MiniCyclingPortalImpl portal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        long validLength = 0;
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            if (length < 1 || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            CRC32 checksum = new CRC32();
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != expected) {
+                break;
+            }
+            try {
+                apply(payload, portal);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("A record in " + path + " could not be replayed.", e);
+            }
+            buffer.position(buffer.position() + length);
+            validLength = buffer.position();
+        }
+        return validLength;
+    }
+
+    //decodes one record and calls the matching portal method
+    private static void apply(ByteBuffer record, MiniCyclingPortalImpl portal) throws Exception {
+        byte operation = record.get();
+        switch (operation) {
+            case CREATE_RACE: {
+                int raceId = record.getInt();
+                String name = PortalSnapshot.getString(record);
+                String description = PortalSnapshot.getString(record);
+                checkId(raceId, portal.createRace(name, description));
+                break;
+            }
+            case REMOVE_RACE:
+                portal.removeRaceById(record.getInt());
+                break;
+            case ADD_STAGE: {
+                int stageId = record.getInt();
+                int raceId = record.getInt();
+                String name = PortalSnapshot.getString(record);
+                String description = PortalSnapshot.getString(record);
+                double length = record.getDouble();
+                LocalDateTime startTime = null;
+                if (record.get() == 1) {
+                    startTime = LocalDateTime.ofEpochSecond(record.getLong(), record.getInt(), ZoneOffset.UTC);
+                }
+                byte type = record.get();
+                checkId(stageId, portal.addStageToRace(raceId, name, description, length, startTime,
+                        type == -1 ? null : StageType.values()[type]));
+                break;
+            }
+            case REMOVE_STAGE:
+                portal.removeStageById(record.getInt());
+                break;
+            case ADD_CLIMB: {
+                int checkpointId = record.getInt();
+                int stageId = record.getInt();
+                double location = record.getDouble();
+                CheckpointType type = CheckpointType.values()[record.get()];
+                double averageGradient = record.getDouble();
+                double length = record.getDouble();
+                checkId(checkpointId, portal.addCategorizedClimbToStage(stageId, location, type, averageGradient, length));
+                break;
+            }
+            case ADD_SPRINT: {
+                int checkpointId = record.getInt();
+                int stageId = record.getInt();
+                checkId(checkpointId, portal.addIntermediateSprintToStage(stageId, record.getDouble()));
+                break;
+            }
+            case REMOVE_CHECKPOINT:
+                portal.removeCheckpoint(record.getInt());
+                break;
+            case CONCLUDE_STAGE:
+                portal.concludeStagePreparation(record.getInt());
+                break;
+            case CREATE_TEAM: {
+                int teamId = record.getInt();
+                String name = PortalSnapshot.getString(record);
+                String description = PortalSnapshot.getString(record);
+                checkId(teamId, portal.createTeam(name, description));
+                break;
+            }
+            case REMOVE_TEAM:
+                portal.removeTeam(record.getInt());
+                break;
+            case CREATE_RIDER: {
+                int riderId = record.getInt();
+                int teamId = record.getInt();
+                String name = PortalSnapshot.getString(record);
+                int yearOfBirth = record.getInt();
+                checkId(riderId, portal.createRider(teamId, name, yearOfBirth));
+                break;
+            }
+            case REMOVE_RIDER:
+                portal.removeRider(record.getInt());
+                break;
+            case REGISTER_RESULTS: {
+                int stageId = record.getInt();
+                int riderId = record.getInt();
+                LocalTime[] times = new LocalTime[record.getInt()];
+                for (int i = 0; i < times.length; i++) {
+                    times[i] = LocalTime.ofNanoOfDay(record.getLong());
+                }
+                portal.registerRiderResultsInStage(stageId, riderId, times);
+                break;
+            }
+            case REGISTER_BATCH: {
+                int stageId = record.getInt();
+                int riders = record.getInt();
+                Map<Integer, LocalTime[]> results = new LinkedHashMap<>();
+                for (int i = 0; i < riders; i++) {
+                    int riderId = record.getInt();
+                    LocalTime[] times = new LocalTime[record.getInt()];
+                    for (int j = 0; j < times.length; j++) {
+                        times[j] = LocalTime.ofNanoOfDay(record.getLong());
+                    }
+                    results.put(riderId, times);
+                }
+                portal.registerStageResultsBatch(stageId, results);
+                break;
+            }
+            case DELETE_RESULTS:
+                portal.deleteRiderResultsInStage(record.getInt(), record.getInt());
+                break;
+            case ERASE:
+                portal.eraseCyclingPortal();
+                break;
+            default:
+                throw new IOException("Unknown journal operation " + operation + ".");
+        }
+    }
+
+    //ids are handed out in order, so replaying a create must give back the id it gave the first time
+    private static void checkId(int expected, int actual) throws IOException {
+        if (expected != actual) {
+            throw new IOException("Replaying the journal gave id " + actual + " where " + expected + " was recorded.");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package cycling;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * PortalMetrics class, the MethodStats of every method of an instrumented portal, keyed by method name.
+ * The statistics can be read as a snapshot, or published over JMX as one MXBean per method, named
+ * cycling:type=PortalMethod,portal=(the portal's name),method=(the method's name).
+ * @author Aria Noroozi
+ */
+public class PortalMetrics {
+    private final Map<String, MethodStats> methods = new ConcurrentSkipListMap<>();
+    //the names the MXBeans were published under, so they can be taken down again
+    private final List<ObjectName> published = new ArrayList<>();
+
+    /**
+     * gets the statistics of a method, adding them if the method has none yet
+     * @param method the name of the method
+     * @return the method's statistics
+    */
+    public MethodStats method(String method) {
+        return methods.computeIfAbsent(method, MethodStats::new);
+    }
+
+    //the statistics of every method as they stand, in order of method name
+    public Map<String, MethodStats.Snapshot> snapshot() {
+        Map<String, MethodStats.Snapshot> snapshot = new LinkedHashMap<>();
+        for (MethodStats stats : methods.values()) {
+            snapshot.put(stats.getMethod(), stats.snapshot());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    //starts every method's counts and latencies again from nothing
+    public void reset() {
+        for (MethodStats stats : methods.values()) {
+            stats.reset();
+        }
+    }
+
+    /**
+     * publishes an MXBean for every method to the platform MBean server
+     * @param portalName the name the portal is published under, which must not be in use by another portal
+     * @throws JMException if the beans cannot be published, in which case none are
+    */
+    public synchronized void registerMBeans(String portalName) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        List<ObjectName> names = new ArrayList<>();
+        try {
+            for (MethodStats stats : methods.values()) {
+                ObjectName name = new ObjectName("cycling:type=PortalMethod,portal=" + ObjectName.quote(portalName)
+                        + ",method=" + stats.getMethod());
+                server.registerMBean(stats, name);
+                names.add(name);
+            }
+        } catch (JMException e) {
+            //only the beans published by this call are taken down again
+            unregister(server, names);
+            throw e;
+        }
+        published.addAll(names);
+    }
+
+    //takes down every MXBean published by registerMBeans
+    public synchronized void unregisterMBeans() {
+        unregister(ManagementFactory.getPlatformMBeanServer(), published);
+        published.clear();
+    }
+
+    private static void unregister(MBeanServer server, List<ObjectName> names) {
+        for (ObjectName name : names) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                //the bean was already taken down by someone else
+            }
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package cycling;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * PortalSnapshot class, reading and writing the whole portal in a compact binary format.
+ * This replaces writing the object graph with an ObjectOutputStream, which stored every class description
+ * alongside the data and needed every rider, checkpoint and stage to be linked back to its parent on loading.
+ * <p>
+ * A snapshot starts with a header (magic number, format version and the five next ids of the id sequences), followed by one section
+ * per entity type: races, teams, riders, then stages. Each section is a record count followed by the records,
+ * and every record is prefixed with its length in bytes so a reader can skip over it without decoding it.
+ * Stage records carry their checkpoints and their results, the results being written in rank order as columns
+ * of primitive nanoseconds. Children always come after their parents, so loading is a single pass that looks
+ * each parent up by id. Every record must be exactly as long as its prefix says, and every parent must already
+ * have been read, otherwise the snapshot is rejected as damaged.
+ * @author Aria Noroozi
+ */
+public class PortalSnapshot {
+    //"CYCL" in ASCII, marks a file as a portal snapshot
+    public static final int MAGIC = 0x4359434C;
+    //bumped whenever the layout of the records changes
+    public static final int VERSION = 1;
+
+    //size of the buffer records are gathered in before being written to the channel
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //what a read snapshot holds: the loaded entities, with their id sequences as they were when it was saved
+    private final EntityRegistry registry;
+
+    private PortalSnapshot(EntityRegistry registry) {
+        this.registry = registry;
+    }
+
+    //get method for the loaded entities
+    public EntityRegistry getRegistry() {return registry;}
+
+    /**
+     * writes every entity in the registry to a snapshot file, replacing the file if it exists
+     * @param registry the registry holding the portal's contents
+     * @param filename location of the file to be written
+     * @throws IOException if the file cannot be written
+    */
+    public static void write(EntityRegistry registry, String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(registry, channel);
+        }
+    }
+
+    /**
+     * writes every entity in the registry to memory, in the same format as a snapshot file.
+     * This takes a copy of the portal that stays as it is while the portal carries on changing
+     * @param registry the registry holding the portal's contents
+     * @return the snapshot, ready to be written to a file as it is
+    */
+    public static byte[] toBytes(EntityRegistry registry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            write(registry, Channels.newChannel(bytes));
+        } catch (IOException e) {
+            //a ByteArrayOutputStream cannot fail to be written to
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    //writes the header and the four sections to a channel, which is left open
+    private static void write(EntityRegistry registry, WritableByteChannel channel) throws IOException {
+        Writer writer = new Writer(channel);
+
+        //header
+        writer.record.putInt(MAGIC);
+        writer.record.putInt(VERSION);
+        for (int next : registry.getIdSequences().get()) {
+            writer.record.putInt(next);
+        }
+        writer.flushRecord(false);
+
+        writer.writeCount(registry.getNumberOfRaces());
+        for (Race race : registry.getRaces()) {
+            writer.record.putInt(race.getRaceID());
+            putString(writer, race.getRaceName());
+            putString(writer, race.getRaceDescription());
+            writer.flushRecord(true);
+        }
+
+        writer.writeCount(registry.getNumberOfTeams());
+        for (Team team : registry.getTeams()) {
+            writer.record.putInt(team.getTeamId());
+            putString(writer, team.getTeamName());
+            putString(writer, team.getTeamDescription());
+            writer.flushRecord(true);
+        }
+
+        //riders are written team by team, so they come back in the same order within their teams
+        writer.writeCount(registry.getRiders().size());
+        for (Team team : registry.getTeams()) {
+            for (Rider rider : team.getRiders()) {
+                writer.record.putInt(rider.getRiderId());
+                writer.record.putInt(rider.getTeamId());
+                putString(writer, rider.getRiderName());
+                writer.record.putInt(rider.getYearOfBirth());
+                writer.flushRecord(true);
+            }
+        }
+
+        //stages are written race by race, in their order within the race
+        writer.writeCount(registry.getStages().size());
+        for (Race race : registry.getRaces()) {
+            for (Stage stage : race.getStages()) {
+                writeStage(writer, stage);
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * reads a snapshot file into a new registry, rebuilding every leaderboard and general classification.
+     * Nothing in the running portal is changed. The registry carries the portal's id sequences as they were saved,
+     * so entities created after loading do not reuse an id from the snapshot.
+     * @param filename location of the file to be read
+     * @return the loaded snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     * @throws StreamCorruptedException if the file is a snapshot but its contents are damaged
+    */
+    public static PortalSnapshot read(String filename) throws IOException {
+        ByteBuffer buffer = readFile(Paths.get(filename));
+        checkHeader(buffer, filename);
+
+        try {
+            int[] idSequences = new int[5];
+            for (int i = 0; i < idSequences.length; i++) {
+                idSequences[i] = buffer.getInt();
+            }
+            EntityRegistry registry = readEntities(buffer);
+            if (buffer.hasRemaining()) {
+                throw new StreamCorruptedException(buffer.remaining() + " bytes follow the last stage");
+            }
+            registry.getIdSequences().set(idSequences);
+            return new PortalSnapshot(registry);
+        } catch (BufferUnderflowException e) {
+            throw damaged(filename, "it ends in the middle of a record", e);
+        } catch (StreamCorruptedException e) {
+            throw damaged(filename, e.getMessage(), e);
+        }
+    }
+
+    //reads the four sections that follow the header
+    private static EntityRegistry readEntities(ByteBuffer buffer) throws StreamCorruptedException {
+        EntityRegistry registry = new EntityRegistry();
+
+        int races = getCount(buffer);
+        for (int i = 0; i < races; i++) {
+            ByteBuffer record = nextRecord(buffer);
+            int raceId = record.getInt();
+            Race race = new Race(raceId, getString(record), getString(record));
+            checkConsumed(record, "race " + raceId);
+            registry.addRace(race);
+        }
+
+        int teams = getCount(buffer);
+        for (int i = 0; i < teams; i++) {
+            ByteBuffer record = nextRecord(buffer);
+            int teamId = record.getInt();
+            Team team = new Team(teamId, getString(record), getString(record));
+            checkConsumed(record, "team " + teamId);
+            registry.addTeam(team);
+        }
+
+        int riders = getCount(buffer);
+        for (int i = 0; i < riders; i++) {
+            ByteBuffer record = nextRecord(buffer);
+            int riderId = record.getInt();
+            int teamId = record.getInt();
+            Rider rider = new Rider(riderId, teamId, getString(record), record.getInt());
+            checkConsumed(record, "rider " + riderId);
+            Team team = registry.getTeam(teamId);
+            if (team == null) {
+                throw new StreamCorruptedException("rider " + riderId + " belongs to team " + teamId + ", which is not in the snapshot");
+            }
+            team.addRider(rider);
+            registry.addRider(rider);
+        }
+
+        int stages = getCount(buffer);
+        for (int i = 0; i < stages; i++) {
+            readStage(nextRecord(buffer), registry);
+        }
+        return registry;
+    }
+
+    //the next length-prefixed record, as a buffer of its own so that reading it cannot run on into the record after
+    private static ByteBuffer nextRecord(ByteBuffer buffer) throws StreamCorruptedException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new StreamCorruptedException("a record claims to be " + length + " bytes long, with " + buffer.remaining() + " bytes left");
+        }
+        ByteBuffer record = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return record;
+    }
+
+    //checks that a record was decoded to exactly the length its prefix declared
+    private static void checkConsumed(ByteBuffer record, String what) throws StreamCorruptedException {
+        if (record.hasRemaining()) {
+            throw new StreamCorruptedException("the record of " + what + " has " + record.remaining() + " bytes left over");
+        }
+    }
+
+    //reads a count of records or values, which can never be negative
+    private static int getCount(ByteBuffer buffer) throws StreamCorruptedException {
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new StreamCorruptedException("a count of " + count + " was found");
+        }
+        return count;
+    }
+
+    //wraps the reason a snapshot could not be read in an exception naming the file
+    private static StreamCorruptedException damaged(String filename, String reason, Exception cause) {
+        StreamCorruptedException e = new StreamCorruptedException(filename + " is a damaged snapshot, " + reason + ".");
+        e.initCause(cause);
+        return e;
+    }
+
+    //checks the magic number and version at the start of a snapshot
+    static void checkHeader(ByteBuffer buffer, String filename) throws IOException {
+        if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException(filename + " is not a cycling portal snapshot.");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException(filename + " is a version " + version + " snapshot, only version " + VERSION + " can be read.");
+        }
+    }
+
+    private static void writeStage(Writer writer, Stage stage) throws IOException {
+        //the record buffer can be swapped for a larger one, so it is fetched again after every ensureCapacity
+        ByteBuffer record = writer.record;
+        record.putInt(stage.getStageID());
+        record.putInt(stage.getRaceID());
+        putString(writer, stage.getStageName());
+        putString(writer, stage.getDescription());
+        record = writer.record;
+        record.put((byte) stage.getType().ordinal());
+        record.putDouble(stage.getLength());
+        LocalDateTime startTime = stage.getStartTime();
+        record.put((byte) (startTime == null ? 0 : 1));
+        if (startTime != null) {
+            record.putLong(startTime.toEpochSecond(ZoneOffset.UTC));
+            record.putInt(startTime.getNano());
+        }
+        record.put((byte) (stage.getState() == "waiting for results" ? 1 : 0));
+
+        Checkpoint[] checkpoints = stage.getCheckpoints();
+        writer.ensureCapacity(Integer.BYTES + checkpoints.length * (Integer.BYTES + 1 + 3 * Double.BYTES));
+        record = writer.record;
+        record.putInt(checkpoints.length);
+        for (Checkpoint checkpoint : checkpoints) {
+            record.putInt(checkpoint.getCheckpointId());
+            record.put((byte) checkpoint.getType().ordinal());
+            record.putDouble(checkpoint.getLocation());
+            record.putDouble(checkpoint.getAverageGradient());
+            record.putDouble(checkpoint.getLength());
+        }
+
+        //results are written in rank order: the rider ids, then the finish times, then one column per checkpoint
+        StageResults results = stage.getResults();
+        int[] rankedRiders = stage.getLeaderboard().getRankedRiderIds();
+        int columns = results.getNumberOfCheckpoints();
+        writer.ensureCapacity(2 * Integer.BYTES + rankedRiders.length * (Integer.BYTES + (columns + 1) * Long.BYTES));
+        record = writer.record;
+        record.putInt(rankedRiders.length);
+        record.putInt(columns);
+        for (int riderId : rankedRiders) {
+            record.putInt(riderId);
+        }
+        for (int riderId : rankedRiders) {
+            record.putLong(results.getFinishTime(riderId));
+        }
+        long[][] checkpointTimes = new long[rankedRiders.length][];
+        for (int i = 0; i < rankedRiders.length; i++) {
+            checkpointTimes[i] = results.getCheckpointTimes(rankedRiders[i]);
+        }
+        for (int column = 0; column < columns; column++) {
+            for (int i = 0; i < rankedRiders.length; i++) {
+                record.putLong(checkpointTimes[i][column]);
+            }
+        }
+        writer.flushRecord(true);
+    }
+
+    //reads one stage record, the results taking up exactly what is left of it
+    private static void readStage(ByteBuffer buffer, EntityRegistry registry) throws StreamCorruptedException {
+        int stageId = buffer.getInt();
+        int raceId = buffer.getInt();
+        Race race = registry.getRace(raceId);
+        if (race == null) {
+            throw new StreamCorruptedException("stage " + stageId + " belongs to race " + raceId + ", which is not in the snapshot");
+        }
+        String name = getString(buffer);
+        String description = getString(buffer);
+        StageType type = getEnum(StageType.values(), buffer.get(), "stage type");
+        double length = buffer.getDouble();
+        LocalDateTime startTime = null;
+        if (buffer.get() == 1) {
+            startTime = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+        }
+        Stage stage = new Stage(stageId, raceId, name, description, type, length, startTime);
+        if (buffer.get() == 1) {
+            stage.endStage();
+        }
+
+        //the checkpoints were saved in order of location, so they are added to the stage in one go
+        Checkpoint[] checkpoints = new Checkpoint[getCount(buffer)];
+        for (int i = 0; i < checkpoints.length; i++) {
+            int checkpointId = buffer.getInt();
+            CheckpointType checkpointType = getEnum(CheckpointType.values(), buffer.get(), "checkpoint type");
+            Checkpoint checkpoint = new Checkpoint(checkpointId, stageId, buffer.getDouble(), checkpointType, buffer.getDouble(), buffer.getDouble());
+            checkpoints[i] = checkpoint;
+            registry.addCheckpoint(checkpoint);
+        }
+        stage.addCheckpoints(checkpoints);
+
+        //the result columns are read back and each rider's result recorded as if it had just been registered
+        int resultCount = getCount(buffer);
+        int columns = getCount(buffer);
+        //a stage without results has no columns yet, whatever its checkpoints
+        if ((resultCount > 0 && columns != checkpoints.length) || (long) resultCount * (Integer.BYTES + (columns + 1L) * Long.BYTES) != buffer.remaining()) {
+            throw new StreamCorruptedException("the results of stage " + stageId + " do not match the length of its record");
+        }
+        int[] riderIds = new int[resultCount];
+        long[] finishTimes = new long[resultCount];
+        long[][] checkpointTimes = new long[resultCount][columns];
+        for (int i = 0; i < resultCount; i++) {
+            riderIds[i] = buffer.getInt();
+            if (registry.getRider(riderIds[i]) == null) {
+                throw new StreamCorruptedException("stage " + stageId + " has a result for rider " + riderIds[i] + ", who is not in the snapshot");
+            }
+        }
+        for (int i = 0; i < resultCount; i++) {
+            finishTimes[i] = buffer.getLong();
+        }
+        for (int column = 0; column < columns; column++) {
+            for (int i = 0; i < resultCount; i++) {
+                checkpointTimes[i][column] = buffer.getLong();
+            }
+        }
+
+        race.addStage(stage);
+        registry.addStage(stage);
+        for (int i = 0; i < resultCount; i++) {
+            stage.getResults().record(riderIds[i], finishTimes[i], checkpointTimes[i]);
+            race.getGeneralClassification().addStageTime(riderIds[i], finishTimes[i]);
+            registry.recordParticipation(riderIds[i], raceId, stageId, finishTimes[i]);
+        }
+        //the riders are already in rank order, so the leaderboard is built in one pass
+        stage.getLeaderboard().addAll(riderIds, finishTimes);
+    }
+
+    //strings are written as a length in bytes followed by UTF-8, a length of -1 stands for null
+    private static void putString(Writer writer, String value) {
+        if (value == null) {
+            writer.ensureCapacity(Integer.BYTES);
+            writer.record.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writer.ensureCapacity(Integer.BYTES + bytes.length);
+        writer.record.putInt(bytes.length);
+        writer.record.put(bytes);
+    }
+
+    //a length that is negative (other than -1) or runs past the buffer is reported as an underflow
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //looks up an enum constant by the ordinal it was saved as
+    private static <E extends Enum<E>> E getEnum(E[] values, byte ordinal, String what) throws StreamCorruptedException {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new StreamCorruptedException(ordinal + " is not a " + what);
+        }
+        return values[ordinal];
+    }
+
+    //reads the whole file into a buffer in one go
+    private static ByteBuffer readFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to be loaded, open it as a mapped archive instead.");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {}
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * Gathers each record in a growable buffer so its length is known before it is written,
+     * then copies it into a fixed buffer that is written to the channel whenever it fills up.
+     */
+    private static class Writer {
+        private final WritableByteChannel channel;
+        private final ByteBuffer output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private ByteBuffer record = ByteBuffer.allocate(1024);
+
+        private Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        //makes sure the record buffer has room for the given number of bytes
+        private void ensureCapacity(int bytes) {
+            if (record.remaining() < bytes + 64) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + bytes + 64));
+                record.flip();
+                larger.put(record);
+                record = larger;
+            }
+        }
+
+        private void writeCount(int count) throws IOException {
+            record.putInt(count);
+            flushRecord(false);
+        }
+
+        //moves the gathered record to the output, with its length in front if asked for
+        private void flushRecord(boolean lengthPrefixed) throws IOException {
+            record.flip();
+            if (lengthPrefixed) {
+                ensureOutput(Integer.BYTES);
+                output.putInt(record.remaining());
+            }
+            while (record.hasRemaining()) {
+                ensureOutput(1);
+                int chunk = Math.min(record.remaining(), output.remaining());
+                ByteBuffer slice = record.slice();
+                slice.limit(chunk);
+                output.put(slice);
+                record.position(record.position() + chunk);
+            }
+            record.clear();
+        }
+
+        private void ensureOutput(int bytes) throws IOException {
+            if (output.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            output.flip();
+            while (output.hasRemaining()) {
+                channel.write(output);
+            }
+            output.clear();
+        }
+    }
+}
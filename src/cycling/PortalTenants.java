@@ -0,0 +1,179 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * PortalTenants class, hosting many independent portals side by side in one JVM, e.g. one per competition.
+ * Each tenant is named by a string and gets its own portal, with its own registry and id sequences,
+ * so creating, erasing or loading one tenant's portal never touches another's.
+ * Portals are created on first use by a factory, which decides the kind of portal each tenant gets,
+ * e.g. a ConcurrentCyclingPortal, or a JournaledCyclingPortal in a directory of the tenant's own.
+ * A portal is created by the first thread to ask for its tenant, outside the map of tenants, so a slow factory
+ * such as one recovering a journal only holds up the threads asking for that same tenant.
+ * @param <P> the kind of portal the tenants are given
+ * @author Aria Noroozi
+ */
+public class PortalTenants<P extends CyclingPortalImpl> implements AutoCloseable {
+
+    /**
+     * creates the portal of a new tenant
+     * @param <P> the kind of portal created
+    */
+    @FunctionalInterface
+    public interface PortalFactory<P> {
+        P create(String tenant) throws IOException;
+    }
+
+    private final PortalFactory<P> factory;
+    //each tenant's portal, as a task that is run once by the thread that put it in
+    private final Map<String, FutureTask<P>> portals = new ConcurrentHashMap<>();
+    //set once close has been called, after which no tenant is created
+    private volatile boolean closing = false;
+
+    /**
+     * @param factory creates the portal of each tenant the first time it is asked for
+    */
+    public PortalTenants(PortalFactory<P> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * gets a tenant's portal, creating it if the tenant is new. Only one portal is ever created per tenant,
+     * even when several threads ask for a new tenant at the same time; the others wait for it.
+     * If the factory fails, the tenant is left without a portal so that the next call tries again
+     * @param tenant the name of the tenant
+     * @return the tenant's portal
+     * @throws IOException if the factory fails to create the portal
+     * @throws IllegalStateException if the host has been closed
+    */
+    public P getOrCreate(String tenant) throws IOException {
+        if (closing) {throw new IllegalStateException("The tenant host has been closed.");}
+        FutureTask<P> task = portals.get(tenant);
+        if (task == null) {
+            FutureTask<P> created = new FutureTask<>(() -> factory.create(tenant));
+            task = portals.putIfAbsent(tenant, created);
+            if (task == null) {
+                task = created;
+                created.run();
+            }
+        }
+        P portal;
+        try {
+            portal = await(task);
+        } catch (IOException | RuntimeException | Error e) {
+            portals.remove(tenant, task);
+            throw e;
+        }
+        //a portal added while close was running may have been missed by it, so it is closed here instead
+        if (closing) {
+            if (portals.remove(tenant, task)) {
+                closePortal(tenant, portal);
+            }
+            throw new IllegalStateException("The tenant host has been closed.");
+        }
+        return portal;
+    }
+
+    //gets a tenant's portal, or null if the tenant has none or it is still being created
+    public P get(String tenant) {
+        FutureTask<P> task = portals.get(tenant);
+        if (task == null || !task.isDone()) {
+            return null;
+        }
+        try {
+            return await(task);
+        } catch (IOException | RuntimeException | Error e) {
+            return null;
+        }
+    }
+
+    //the names of every tenant with a portal, or with one being created
+    public Set<String> getTenants() {return portals.keySet();}
+
+    public int size() {return portals.size();}
+
+    /**
+     * stops hosting a tenant. Its portal is closed if it holds resources, such as a journal
+     * @param tenant the name of the tenant
+     * @return true if the tenant had a portal
+     * @throws IOException if the portal fails to close
+    */
+    public boolean remove(String tenant) throws IOException {
+        FutureTask<P> task = portals.remove(tenant);
+        if (task == null) {
+            return false;
+        }
+        P portal;
+        try {
+            portal = await(task);
+        } catch (IOException | RuntimeException e) {
+            //the portal was never created, so there is nothing to close
+            return false;
+        }
+        closePortal(tenant, portal);
+        return true;
+    }
+
+    //stops hosting every tenant, closing each portal that holds resources. The first failure is thrown once all have been tried
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        IOException failure = null;
+        for (String tenant : portals.keySet()) {
+            try {
+                remove(tenant);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    //waits for a portal to be created, passing on whatever the factory threw
+    private P await(FutureTask<P> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a portal to be created.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("The portal could not be created.", cause);
+        }
+    }
+
+    //closes a portal if it holds resources, such as a journal
+    private void closePortal(String tenant, P portal) throws IOException {
+        if (!(portal instanceof AutoCloseable)) {
+            return;
+        }
+        try {
+            ((AutoCloseable) portal).close();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("The portal of tenant " + tenant + " could not be closed.", e);
+        }
+    }
+}
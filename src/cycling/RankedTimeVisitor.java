@@ -0,0 +1,19 @@
+package cycling;
+
+import java.io.IOException;
+
+/**
+ * RankedTimeVisitor interface, called once for each rider of a ranking, in order from first to last.
+ * Rankings are handed to a visitor so they can be streamed out without being copied into arrays first.
+ * @author Aria Noroozi
+ */
+@FunctionalInterface
+public interface RankedTimeVisitor {
+    /**
+     * @param rank the rider's position in the ranking, starting from 0 for the winner
+     * @param riderId the id of the rider
+     * @param elapsed the rider's time in nanoseconds
+     * @throws IOException if the visitor writes the result out and that fails
+    */
+    void visit(int rank, int riderId, long elapsed) throws IOException;
+}
@@ -0,0 +1,131 @@
+package cycling;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * RiderHistory class, the stages a rider has a result in, with the race of each stage and the rider's elapsed time.
+ * The history is kept for each rider as results are registered and deleted, so a rider's season can be read
+ * in time proportional to the number of stages they raced, without looking through every race and stage.
+ * Entries are held in primitive arrays sorted by stage id. A change publishes new arrays instead of changing the old ones,
+ * so a reader always sees a whole history, even while results for the rider are registered in other stages.
+ * Ranks change as other riders' results come in, so they are not kept here but read from each stage's leaderboard.
+ * @author Aria Noroozi
+ */
+public class RiderHistory {
+
+    /**
+     * the history at one point in time. It is never changed once published
+    */
+    public static final class Entries {
+        private final int[] raceIds;
+        private final int[] stageIds;
+        private final long[] elapsedTimes;
+
+        private Entries(int[] raceIds, int[] stageIds, long[] elapsedTimes) {
+            this.raceIds = raceIds;
+            this.stageIds = stageIds;
+            this.elapsedTimes = elapsedTimes;
+        }
+
+        //get methods, the index runs from 0 to size() - 1 in order of stage id
+        public int size() {return stageIds.length;}
+        public int getRaceIdAt(int index) {return raceIds[index];}
+        public int getStageIdAt(int index) {return stageIds[index];}
+        public long getElapsedAt(int index) {return elapsedTimes[index];}
+    }
+
+    /**
+     * one stage result of a rider, as handed out by the portal
+    */
+    public static final class Result {
+        private final int raceId;
+        private final int stageId;
+        private final long elapsed;
+        private final int rank;
+
+        Result(int raceId, int stageId, long elapsed, int rank) {
+            this.raceId = raceId;
+            this.stageId = stageId;
+            this.elapsed = elapsed;
+            this.rank = rank;
+        }
+
+        //get methods
+        public int getRaceId() {return raceId;}
+        public int getStageId() {return stageId;}
+        //the elapsed time in nanoseconds
+        public long getElapsed() {return elapsed;}
+        public LocalTime getElapsedTime() {return ElapsedTime.toLocalTime(elapsed);}
+        //the rider's position in the stage when the history was read, starting from 0 for the winner
+        public int getRank() {return rank;}
+    }
+
+    private static final Entries EMPTY = new Entries(new int[0], new int[0], new long[0]);
+
+    private volatile Entries entries = EMPTY;
+
+    //the current history, safe to read at any time
+    public Entries getEntries() {return entries;}
+    public int size() {return entries.size();}
+
+    /**
+     * adds a stage result to the history, replacing any earlier result in the same stage
+     * @param raceId the id of the race the stage is part of
+     * @param stageId the id of the stage
+     * @param elapsed the rider's elapsed time in the stage, in nanoseconds
+    */
+    public synchronized void record(int raceId, int stageId, long elapsed) {
+        Entries current = entries;
+        int index = Arrays.binarySearch(current.stageIds, stageId);
+        if (index >= 0) {
+            long[] elapsedTimes = current.elapsedTimes.clone();
+            elapsedTimes[index] = elapsed;
+            int[] raceIds = current.raceIds.clone();
+            raceIds[index] = raceId;
+            entries = new Entries(raceIds, current.stageIds, elapsedTimes);
+            return;
+        }
+        index = -index - 1;
+        int size = current.size();
+        int[] raceIds = new int[size + 1];
+        int[] stageIds = new int[size + 1];
+        long[] elapsedTimes = new long[size + 1];
+        //the entries before the new one are copied across, then the new one, then the rest shifted along by one
+        System.arraycopy(current.raceIds, 0, raceIds, 0, index);
+        System.arraycopy(current.stageIds, 0, stageIds, 0, index);
+        System.arraycopy(current.elapsedTimes, 0, elapsedTimes, 0, index);
+        raceIds[index] = raceId;
+        stageIds[index] = stageId;
+        elapsedTimes[index] = elapsed;
+        System.arraycopy(current.raceIds, index, raceIds, index + 1, size - index);
+        System.arraycopy(current.stageIds, index, stageIds, index + 1, size - index);
+        System.arraycopy(current.elapsedTimes, index, elapsedTimes, index + 1, size - index);
+        entries = new Entries(raceIds, stageIds, elapsedTimes);
+    }
+
+    /**
+     * takes a stage result out of the history
+     * @param stageId the id of the stage
+     * @return true if the rider had a result in the stage
+    */
+    public synchronized boolean remove(int stageId) {
+        Entries current = entries;
+        int index = Arrays.binarySearch(current.stageIds, stageId);
+        if (index < 0) {
+            return false;
+        }
+        int size = current.size();
+        int[] raceIds = new int[size - 1];
+        int[] stageIds = new int[size - 1];
+        long[] elapsedTimes = new long[size - 1];
+        System.arraycopy(current.raceIds, 0, raceIds, 0, index);
+        System.arraycopy(current.stageIds, 0, stageIds, 0, index);
+        System.arraycopy(current.elapsedTimes, 0, elapsedTimes, 0, index);
+        System.arraycopy(current.raceIds, index + 1, raceIds, index, size - index - 1);
+        System.arraycopy(current.stageIds, index + 1, stageIds, index, size - index - 1);
+        System.arraycopy(current.elapsedTimes, index + 1, elapsedTimes, index, size - index - 1);
+        entries = new Entries(raceIds, stageIds, elapsedTimes);
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package cycling;
+
+import java.util.BitSet;
+
+/**
+ * SlotAllocator class, giving each id a dense slot from 0 upwards so that values kept for the ids can be held
+ * in plain arrays indexed by slot. Ids only ever grow, but a freed slot is handed out again to the next id,
+ * lowest first, so arrays indexed by slot only grow to the most ids held at once, not to the highest id seen.
+ * Ids are mapped to their slots in a table of primitive ints with open addressing, so no id or slot is boxed.
+ * The allocator is not synchronized, the class using it guards it as it does its own arrays.
+ * @author Aria Noroozi
+ */
+public class SlotAllocator {
+    //the table is kept at most half full, with its length a power of two
+    private static final int MIN_TABLE_LENGTH = 16;
+
+    //keys holds the ids, and values their slot plus one, so that 0 marks an empty entry
+    private int[] keys = new int[MIN_TABLE_LENGTH];
+    private int[] values = new int[MIN_TABLE_LENGTH];
+    //marks the slots currently given to an id
+    private BitSet used = new BitSet();
+    private int size = 0;
+
+    //get methods
+    public int size() {return size;}
+    public boolean isUsed(int slot) {return used.get(slot);}
+    //the first slot in use from the given slot onwards, or -1 if there are none
+    public int nextUsed(int fromSlot) {return used.nextSetBit(fromSlot);}
+    //one more than the highest slot in use, arrays indexed by slot need at least this length
+    public int getSlotLimit() {return used.length();}
+
+    /**
+     * gets the slot of an id
+     * @param id the id
+     * @return the id's slot, or -1 if the id has none
+    */
+    public int slotOf(int id) {
+        int mask = keys.length - 1;
+        for (int i = indexFor(id, mask); values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == id) {
+                return values[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * gives an id a slot, reusing the lowest freed slot if there is one
+     * @param id the id
+     * @return the id's slot, which is the one it already has if it has one
+    */
+    public int allocate(int id) {
+        int mask = keys.length - 1;
+        int i = indexFor(id, mask);
+        for (; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == id) {
+                return values[i] - 1;
+            }
+        }
+        int slot = used.nextClearBit(0);
+        used.set(slot);
+        keys[i] = id;
+        values[i] = slot + 1;
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return slot;
+    }
+
+    /**
+     * takes an id's slot back, so it can be given to the next id allocated
+     * @param id the id
+     * @return the slot the id had, or -1 if it had none
+    */
+    public int free(int id) {
+        int mask = keys.length - 1;
+        int i = indexFor(id, mask);
+        for (; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == id) {
+                break;
+            }
+        }
+        if (values[i] == 0) {
+            return -1;
+        }
+        int slot = values[i] - 1;
+        used.clear(slot);
+        size--;
+        //the entries after the gap are moved back into it if it lies on their probe path, so lookups never stop early
+        int gap = i;
+        for (int j = (gap + 1) & mask; values[j] != 0; j = (j + 1) & mask) {
+            int home = indexFor(keys[j], mask);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = 0;
+        return slot;
+    }
+
+    //frees every slot, and lets go of a table grown for many ids
+    public void clear() {
+        keys = new int[MIN_TABLE_LENGTH];
+        values = new int[MIN_TABLE_LENGTH];
+        used.clear();
+        size = 0;
+    }
+
+    private void resize(int length) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[length];
+        values = new int[length];
+        int mask = length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != 0) {
+                int i = indexFor(oldKeys[j], mask);
+                while (values[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    //ids are mostly consecutive, so they are spread over the table by multiplying with the golden ratio
+    private static int indexFor(int id, int mask) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -2,9 +2,9 @@ package cycling;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.List;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 
 /**
   Stage class to make individual stages and add them to races
@@ -15,7 +15,7 @@ public class Stage implements java.io.Serializable {
     /*
       initialise instance attributes for the stages's name, description, stage and race IDs,
       stage type, length, startTime, and checkpoints
-      The IDs and checkpoint are not set by the user: The ID is given automatically and not to be changed
+      The IDs and checkpoint are not set by the user: The ID is given by the portal and not to be changed
       The stage list starts empty but gets filled up when addStageToRace is correctly called
     */
 
@@ -27,10 +27,16 @@ public class Stage implements java.io.Serializable {
     private LocalDateTime startTime;
     private int stageID;
     private List<Checkpoint> checkPoints = new ArrayList<>();
+    //copies of the checkpoint list and its ids, rebuilt whenever a checkpoint is added or removed and shared by every reader
+    private volatile Checkpoint[] checkpointView = new Checkpoint[0];
+    private volatile int[] checkpointIds = new int[0];
     private String state;
-
-    //static variable, acting as an index to give each instance a unique stage ID
-    private static int i = 0;
+    //the riders' finishing times, kept in order as results are registered and deleted
+    private StageLeaderboard leaderboard = new StageLeaderboard();
+    //the riders' finish and checkpoint times, stored in columns
+    private StageResults results = new StageResults();
+    //the points of the stage, kept until the results change
+    private transient volatile StageScores scores;
 
     //get methods
     public int getRaceID() {return raceID;}
@@ -40,8 +46,22 @@ public class Stage implements java.io.Serializable {
     public double getLength() {return length;}
     public LocalDateTime getStartTime() {return startTime;}
     public int getStageID() {return stageID;}
-    public Checkpoint[] getCheckpoints() {return checkPoints.toArray(new Checkpoint[0]);}
+    //the returned arrays are shared, so they must not be changed by the caller
+    public Checkpoint[] getCheckpoints() {return checkpointView;}
+    public int[] getCheckpointIds() {return checkpointIds;}
     public String getState() {return state;}
+    public StageLeaderboard getLeaderboard() {return leaderboard;}
+    public StageResults getResults() {return results;}
+
+    //the points table of the stage, scored again only if the results have changed since it was last built
+    public StageScores getScores() {
+        StageScores current = scores;
+        if (current == null || current.getVersion() != results.getVersion()) {
+            current = StageScores.compute(this);
+            scores = current;
+        }
+        return current;
+    }
 
     //set methods
     public void setRaceID(int raceID) {this.raceID = raceID;}
@@ -56,33 +76,81 @@ public class Stage implements java.io.Serializable {
     public void endStage() {state = "waiting for results";}
     
     //Method to add a checkpoint to an instance's checkpoint list
+    //the list is kept in order of location, so the checkpoint is slotted in after any at the same location
     public void addCheckpoint(Checkpoint newCheckpoint) {
-      this.checkPoints.add(newCheckpoint); 
-      Collections.sort(this.checkPoints, new Comparator<Checkpoint>() {
-        public int compare(Checkpoint c1, Checkpoint c2) {
-          return Double.compare(c1.getLocation(), c2.getLocation());
+      this.checkPoints.add(indexAfter(checkpointView, newCheckpoint.getLocation()), newCheckpoint);
+      publishCheckpoints();}
+
+    //Method to add every checkpoint of a saved stage at once. They are only sorted if they are not already in order
+    public void addCheckpoints(Checkpoint[] newCheckpoints) {
+      checkPoints.addAll(Arrays.asList(newCheckpoints));
+      for (int j = 1; j < checkPoints.size(); j++) {
+        if (checkPoints.get(j).getLocation() < checkPoints.get(j-1).getLocation()) {
+          //the sort is stable, so checkpoints at the same location keep the order they were added in
+          checkPoints.sort(Comparator.comparingDouble(Checkpoint::getLocation));
+          break;
         }
-      });}
+      }
+      publishCheckpoints();
+    }
+
+    /**
+     * finds the first checkpoint further along the stage than a location
+     * @param location the distance from the start of the stage, in km
+     * @return the next checkpoint, or null if there are none after that location
+    */
+    public Checkpoint nextCheckpointAfter(double location) {
+      Checkpoint[] view = checkpointView;
+      int index = indexAfter(view, location);
+      return index == view.length ? null : view[index];
+    }
+
+    //the index of the first checkpoint past a location, found by binary search.
+    //The view always matches the list once a change is done, so it is searched when inserting too
+    private static int indexAfter(Checkpoint[] view, double location) {
+      int low = 0;
+      int high = view.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (view[mid].getLocation() <= location) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
 
     //Method to remove a checkpoint based on a fetched index
     public void deleteCheckpoint(int index) {
       this.checkPoints.set(index, null);
       this.checkPoints.remove(index);
-
+      publishCheckpoints();
     }
 
-    //Called when the portal is erased, so that ids can start from 0 again.
-    public static void reset() {i = 0;};
+    //Method to remove a checkpoint that has already been looked up
+    public void deleteCheckpoint(Checkpoint checkpoint) {this.checkPoints.remove(checkpoint); publishCheckpoints();}
+
+    //builds new copies of the checkpoint list for readers, replacing the old ones in one step
+    private void publishCheckpoints() {
+      Checkpoint[] view = checkPoints.toArray(new Checkpoint[0]);
+      int[] ids = new int[view.length];
+      for (int j = 0; j < view.length; j++) {
+        ids[j] = view[j].getCheckpointId();
+      }
+      checkpointIds = ids;
+      checkpointView = view;
+    }
 
-    //Constructor
-    public Stage(int raceID, String stageName, String description, StageType type, double length, LocalDateTime startTime){
+    //Constructor, the id comes from the portal's id sequences
+    public Stage(int stageID, int raceID, String stageName, String description, StageType type, double length, LocalDateTime startTime){
+        this.stageID = stageID;
         this.raceID = raceID;
         this.stageName = stageName;
         this.description = description;
         this.type = type;
         this.length = length;
         this.startTime = startTime;
-        this.stageID = i++;
         state = "in preparation";
     };
 
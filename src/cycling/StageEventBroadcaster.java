@@ -0,0 +1,217 @@
+package cycling;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * StageEventBroadcaster class, turning changes to stage results into server-sent events for any number of subscribers.
+ * Once registered with a portal as a StageResultListener, it sends each change as a small rank delta:
+ * <ul>
+ * <li>result: a rider's new position and elapsed time. The rider is taken out of the ranking if they are already in it,
+ *     then put in at the position given, moving everyone from there on down by one</li>
+ * <li>deleted: a rider taken out of the ranking, moving everyone after them up by one</li>
+ * <li>snapshot: the whole ranking, in order, sent first and whenever a subscriber has fallen too far behind</li>
+ * </ul>
+ * Riders are ranked by elapsed time, then by id, so a client can also place a rider from their elapsed time alone.
+ * Each event fully sets or clears one rider's result, so events that were already in a snapshot can be applied
+ * to it again without harm. This is what lets a snapshot be taken while results are still coming in.
+ * Each event is encoded once, by the thread registering the result, and put in a fixed ring of recent events for its stage.
+ * Subscribers read from the ring at their own pace and never hold up the thread registering results.
+ * A subscriber that wakes late takes every event it missed in one go. One that falls a whole ring behind
+ * is sent a snapshot in place of the events it missed.
+ * Events are only kept for stages with at least one subscriber.
+ * @author Aria Noroozi
+ */
+public class StageEventBroadcaster implements StageResultListener {
+    //the events kept per stage, a subscriber further behind than this is sent a snapshot instead
+    private static final int FEED_CAPACITY = 4096;
+
+    //the recent events of one stage, with the number of subscribers reading them
+    private static final class Feed {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition published = lock.newCondition();
+        private final byte[][] events = new byte[FEED_CAPACITY][];
+        //the sequence number the next event will get
+        private long next = 0;
+        private int subscribers = 0;
+
+        void publish(byte[] event) {
+            lock.lock();
+            try {
+                events[(int) (next % FEED_CAPACITY)] = event;
+                next++;
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long head() {
+            lock.lock();
+            try {
+                return next;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void wake() {
+            lock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * one subscriber's place in a stage's events. It is read by one thread only
+    */
+    public final class Subscription implements AutoCloseable {
+        private final int stageId;
+        private final Feed feed;
+        private long cursor;
+        //set by the first close, so closing again does not take another subscriber off the feed
+        private final AtomicBoolean subscriptionClosed = new AtomicBoolean();
+
+        private Subscription(int stageId, Feed feed) {
+            this.stageId = stageId;
+            this.feed = feed;
+            this.cursor = feed.head();
+        }
+
+        public int getStageId() {return stageId;}
+
+        /**
+         * skips to the newest event, to be called just before a snapshot is taken. Any change made while the snapshot
+         * is taken is then both in the snapshot and among the events that follow it
+        */
+        public void resync() {cursor = feed.head();}
+
+        /**
+         * waits for events, and takes every event published since the last call
+         * @param events the list the events are added to, each ready to be written out as it is
+         * @param timeout the longest to wait for an event
+         * @param unit the unit of the timeout
+         * @return false if the subscriber has fallen too far behind, in which case no events are added
+         *         and a snapshot must be sent after calling resync
+         * @throws InterruptedException if the thread is interrupted while waiting
+        */
+        public boolean poll(List<byte[]> events, long timeout, TimeUnit unit) throws InterruptedException {
+            feed.lock.lock();
+            try {
+                long nanos = unit.toNanos(timeout);
+                while (feed.next == cursor && nanos > 0 && !closed) {
+                    nanos = feed.published.awaitNanos(nanos);
+                }
+                if (feed.next - cursor > FEED_CAPACITY) {
+                    return false;
+                }
+                for (; cursor < feed.next; cursor++) {
+                    events.add(feed.events[(int) (cursor % FEED_CAPACITY)]);
+                }
+                return true;
+            } finally {
+                feed.lock.unlock();
+            }
+        }
+
+        //stops the subscription. The stage's events are no longer kept once its last subscriber has gone.
+        //Only the feed this subscription was made on is touched, never a newer one for the same stage
+        @Override
+        public void close() {
+            if (!subscriptionClosed.compareAndSet(false, true)) {
+                return;
+            }
+            feeds.computeIfPresent(stageId, (id, current) ->
+                    current != feed ? current : --current.subscribers == 0 ? null : current);
+        }
+    }
+
+    private final Map<Integer, Feed> feeds = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    /**
+     * starts following a stage's results
+     * @param stageId the id of the stage
+     * @return the subscription, placed after the newest event, so a snapshot should be sent first
+    */
+    public Subscription subscribe(int stageId) {
+        Feed feed = feeds.compute(stageId, (id, current) -> {
+            Feed subscribed = current == null ? new Feed() : current;
+            subscribed.subscribers++;
+            return subscribed;
+        });
+        return new Subscription(stageId, feed);
+    }
+
+    public boolean isClosed() {return closed;}
+
+    //wakes every waiting subscriber, whose polls return at once from then on
+    public void close() {
+        closed = true;
+        for (Feed feed : feeds.values()) {
+            feed.wake();
+        }
+    }
+
+    @Override
+    public void resultRegistered(int stageId, int riderId, int rank, long elapsed) {
+        Feed feed = feeds.get(stageId);
+        if (feed != null) {
+            feed.publish(encode("result", "{\"riderId\":" + riderId + ",\"rank\":" + rank
+                    + ",\"elapsedTime\":\"" + formatTime(elapsed) + "\"}"));
+        }
+    }
+
+    @Override
+    public void resultDeleted(int stageId, int riderId) {
+        Feed feed = feeds.get(stageId);
+        if (feed != null) {
+            feed.publish(encode("deleted", "{\"riderId\":" + riderId + "}"));
+        }
+    }
+
+    /**
+     * encodes the whole ranking of a stage as a snapshot event
+     * @param portal the portal holding the stage
+     * @param stageId the id of the stage
+     * @return the event, ready to be written out
+     * @throws IDNotRecognisedException if the stage does not exist
+    */
+    public static byte[] snapshot(MiniCyclingPortalImpl portal, int stageId) throws IDNotRecognisedException {
+        StringBuilder data = new StringBuilder("[");
+        try {
+            portal.forEachRankedResultInStage(stageId, (rank, riderId, elapsed) -> {
+                if (rank > 0) {
+                    data.append(',');
+                }
+                data.append("{\"riderId\":").append(riderId)
+                        .append(",\"elapsedTime\":\"").append(formatTime(elapsed)).append("\"}");
+            });
+        } catch (IOException e) {
+            //the visitor only appends to a StringBuilder, which cannot fail
+            throw new IllegalStateException(e);
+        }
+        return encode("snapshot", data.append(']').toString());
+    }
+
+    //an event, as it is written to the stream
+    static byte[] encode(String event, String data) {
+        return ("event: " + event + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    //times are written as hh:mm:ss, with a fraction of a second if there is one, as in the other responses
+    private static String formatTime(long elapsed) {
+        return DateTimeFormatter.ISO_LOCAL_TIME.format(ElapsedTime.toLocalTime(elapsed));
+    }
+}
@@ -0,0 +1,366 @@
+package cycling;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * StageLeaderboard class, keeping the riders of a stage sorted by their elapsed time as results come in.
+ * The riders are held in an order-statistic tree (a treap where every node knows the size of its subtree),
+ * keyed by elapsed time and then rider id so ties are always broken the same way.
+ * Registering or deleting a result costs O(log n), and the rank of any rider can be read in O(log n)
+ * without sorting the stage again. A whole finish list can also be added at once, which builds the tree
+ * in a single pass when the leaderboard is empty.
+ * @author Aria Noroozi
+ */
+public class StageLeaderboard {
+
+    //A node of the tree, holding one rider's result
+    private static class Node {
+        private int riderId;
+        private long elapsed;
+        private int priority;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(int riderId, long elapsed) {
+            this.riderId = riderId;
+            this.elapsed = elapsed;
+            this.priority = priorityOf(riderId);
+        }
+    }
+
+    //the ranked order at one point in time. It is never changed once built, so it can be read without a lock
+    private static class Ranking {
+        private final int[] riderIds;
+        private final long[] elapsedTimes;
+
+        private Ranking(int[] riderIds, long[] elapsedTimes) {
+            this.riderIds = riderIds;
+            this.elapsedTimes = elapsedTimes;
+        }
+    }
+
+    private Node root;
+    //every rider currently on the leaderboard, mapped to their elapsed time so they can be found in the tree
+    private Map<Integer, Long> elapsedTimes = new HashMap<>();
+
+    //the ranking handed out to readers, rebuilt only after the leaderboard has changed
+    private transient volatile Ranking ranking;
+
+    //get methods
+    public int size() {return elapsedTimes.size();}
+    public boolean contains(int riderId) {return elapsedTimes.containsKey(riderId);}
+
+    /**
+     * adds a rider's result to the leaderboard
+     * @param riderId the id of the rider
+     * @param elapsed the elapsed time of the rider in the stage, in nanoseconds
+    */
+    public void add(int riderId, long elapsed) {
+        if (elapsedTimes.containsKey(riderId)) {
+            remove(riderId);
+        }
+        elapsedTimes.put(riderId, elapsed);
+        root = insert(root, new Node(riderId, elapsed));
+        invalidate();
+    }
+
+    /**
+     * adds the results of many riders at once. The cached arrays are only dropped once,
+     * and if the leaderboard is empty the tree is built straight from the sorted batch in O(n)
+     * @param riderIds the ids of the riders
+     * @param elapsed the elapsed time of each rider, in nanoseconds, matching riderIds
+    */
+    public void addAll(int[] riderIds, long[] elapsed) {
+        if (!elapsedTimes.isEmpty()) {
+            for (int i = 0; i < riderIds.length; i++) {
+                if (elapsedTimes.containsKey(riderIds[i])) {
+                    remove(riderIds[i]);
+                }
+                elapsedTimes.put(riderIds[i], elapsed[i]);
+                root = insert(root, new Node(riderIds[i], elapsed[i]));
+            }
+            invalidate();
+            return;
+        }
+        Node[] nodes = new Node[riderIds.length];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node(riderIds[i], elapsed[i]);
+        }
+        Arrays.sort(nodes, (a, b) -> compare(a.riderId, a.elapsed, b));
+        for (Node node : nodes) {
+            elapsedTimes.put(node.riderId, node.elapsed);
+        }
+        root = build(nodes);
+        invalidate();
+    }
+
+    /**
+     * removes a rider's result from the leaderboard, nothing happens if the rider has no result
+     * @param riderId the id of the rider
+    */
+    public void remove(int riderId) {
+        Long elapsed = elapsedTimes.remove(riderId);
+        if (elapsed != null) {
+            root = delete(root, riderId, elapsed);
+            invalidate();
+        }
+    }
+
+    /**
+     * gets the elapsed time of a rider on the leaderboard
+     * @param riderId the id of the rider
+     * @return the elapsed time in nanoseconds, or -1 if the rider has no result
+    */
+    public long getElapsed(int riderId) {
+        Long elapsed = elapsedTimes.get(riderId);
+        return elapsed == null ? -1 : elapsed;
+    }
+
+    /**
+     * gets the position of a rider on the leaderboard
+     * @param riderId the id of the rider
+     * @return the rider's rank, starting from 0 for the winner, or -1 if the rider has no result
+    */
+    public int getRank(int riderId) {
+        Long elapsed = elapsedTimes.get(riderId);
+        if (elapsed == null) {
+            return -1;
+        }
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            int comparison = compare(riderId, elapsed, node);
+            if (comparison < 0) {
+                node = node.left;
+            }
+            else {
+                rank += sizeOf(node.left);
+                if (comparison == 0) {
+                    return rank;
+                }
+                rank++;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * gets the rider at a position on the leaderboard
+     * @param rank the position, starting from 0 for the winner
+     * @return the id of the rider at that rank, or -1 if there is nobody there
+    */
+    public int getRiderAt(int rank) {
+        Node node = root;
+        while (node != null) {
+            int leftSize = sizeOf(node.left);
+            if (rank < leftSize) {
+                node = node.left;
+            }
+            else if (rank == leftSize) {
+                return node.riderId;
+            }
+            else {
+                rank -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    //the ids of the riders from first to last. A copy is returned so callers cannot alter the leaderboard
+    public int[] getRankedRiderIds() {
+        return refresh().riderIds.clone();
+    }
+
+    //the elapsed times from first to last, in nanoseconds, matching getRankedRiderIds
+    public long[] getRankedElapsedTimes() {
+        return refresh().elapsedTimes.clone();
+    }
+
+    /**
+     * calls the visitor for each rider from first to last. The ranking is read in place rather than copied,
+     * so nothing is allocated once it has been built
+     * @param visitor called with each rider's rank, id and elapsed time
+     * @throws IOException if the visitor fails to write a result out
+    */
+    public void forEachRanked(RankedTimeVisitor visitor) throws IOException {
+        Ranking current = refresh();
+        for (int i = 0; i < current.riderIds.length; i++) {
+            visitor.visit(i, current.riderIds[i], current.elapsedTimes[i]);
+        }
+    }
+
+    /**
+     * gets the ranked rider ids only if they are already built, without touching the tree.
+     * Safe to call while another thread is changing the leaderboard
+     * @return a copy of the ranked rider ids, or null if the leaderboard has changed since they were last built
+    */
+    public int[] getCachedRankedRiderIds() {
+        Ranking current = ranking;
+        return current == null ? null : current.riderIds.clone();
+    }
+
+    /**
+     * gets the ranked elapsed times only if they are already built, without touching the tree.
+     * Safe to call while another thread is changing the leaderboard
+     * @return a copy of the ranked elapsed times, or null if the leaderboard has changed since they were last built
+    */
+    public long[] getCachedRankedElapsedTimes() {
+        Ranking current = ranking;
+        return current == null ? null : current.elapsedTimes.clone();
+    }
+
+    //Called when the stage's results are wiped.
+    public void clear() {
+        root = null;
+        elapsedTimes.clear();
+        invalidate();
+    }
+
+    //the cached arrays are dropped whenever a result is added or removed
+    private void invalidate() {
+        ranking = null;
+    }
+
+    //walks the tree in order once to fill both arrays of the ranking
+    private Ranking refresh() {
+        Ranking current = ranking;
+        if (current == null) {
+            int[] riderIds = new int[size()];
+            long[] times = new long[size()];
+            fill(root, riderIds, times, 0);
+            current = new Ranking(riderIds, times);
+            ranking = current;
+        }
+        return current;
+    }
+
+    private static int fill(Node node, int[] riderIds, long[] times, int index) {
+        if (node == null) {
+            return index;
+        }
+        index = fill(node.left, riderIds, times, index);
+        riderIds[index] = node.riderId;
+        times[index] = node.elapsed;
+        return fill(node.right, riderIds, times, index + 1);
+    }
+
+    //orders by elapsed time first, then by rider id
+    private static int compare(int riderId, long elapsed, Node node) {
+        int comparison = Long.compare(elapsed, node.elapsed);
+        return comparison != 0 ? comparison : Integer.compare(riderId, node.riderId);
+    }
+
+    //builds the treap of nodes already in key order, keeping a stack of the rightmost path of the tree built so far
+    private static Node build(Node[] sorted) {
+        Deque<Node> rightPath = new ArrayDeque<>();
+        for (Node node : sorted) {
+            Node last = null;
+            while (!rightPath.isEmpty() && rightPath.peek().priority < node.priority) {
+                last = rightPath.pop();
+                update(last);
+            }
+            node.left = last;
+            if (!rightPath.isEmpty()) {
+                rightPath.peek().right = node;
+            }
+            rightPath.push(node);
+        }
+        Node top = null;
+        while (!rightPath.isEmpty()) {
+            top = rightPath.pop();
+            update(top);
+        }
+        return top;
+    }
+
+    private static Node insert(Node node, Node newNode) {
+        if (node == null) {
+            return newNode;
+        }
+        if (compare(newNode.riderId, newNode.elapsed, node) < 0) {
+            node.left = insert(node.left, newNode);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        }
+        else {
+            node.right = insert(node.right, newNode);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node delete(Node node, int riderId, long elapsed) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compare(riderId, elapsed, node);
+        if (comparison < 0) {
+            node.left = delete(node.left, riderId, elapsed);
+        }
+        else if (comparison > 0) {
+            node.right = delete(node.right, riderId, elapsed);
+        }
+        else {
+            //the node to remove is rotated down until it has at most one child, which then takes its place
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            if (node.left.priority > node.right.priority) {
+                node = rotateRight(node);
+                node.right = delete(node.right, riderId, elapsed);
+            }
+            else {
+                node = rotateLeft(node);
+                node.left = delete(node.left, riderId, elapsed);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {node.size = 1 + sizeOf(node.left) + sizeOf(node.right);}
+
+    private static int sizeOf(Node node) {return node == null ? 0 : node.size;}
+
+    //scrambles the rider id into a priority, so the tree stays balanced without needing a random generator
+    private static int priorityOf(int riderId) {
+        int hash = riderId * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+}
@@ -0,0 +1,25 @@
+package cycling;
+
+/**
+ * StageResultListener interface, told about every change to a stage's results once the stage's rankings include it.
+ * Listeners are called by the thread making the change, while a ConcurrentCyclingPortal still holds the stage's
+ * write lock, so they must hand the change on and return straight away rather than do any work of their own.
+ * @author Aria Noroozi
+ */
+public interface StageResultListener {
+    /**
+     * called when a rider's result is registered
+     * @param stageId the id of the stage
+     * @param riderId the id of the rider
+     * @param rank the rider's new position in the stage, starting from 0 for the winner
+     * @param elapsed the rider's elapsed time in the stage, in nanoseconds
+    */
+    void resultRegistered(int stageId, int riderId, int rank, long elapsed);
+
+    /**
+     * called when a rider's result is deleted, or the rider is removed
+     * @param stageId the id of the stage
+     * @param riderId the id of the rider
+    */
+    void resultDeleted(int stageId, int riderId);
+}
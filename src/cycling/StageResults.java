@@ -0,0 +1,138 @@
+package cycling;
+
+import java.util.Arrays;
+
+/**
+ * StageResults class, storing the times of every rider with a result in a stage.
+ * The times are kept in columns of primitive nanoseconds: one column for the finish line and one per checkpoint,
+ * all indexed by a dense slot given to each rider when their result is recorded.
+ * Slots are handed out by a SlotAllocator, which reuses the slot of a deleted result for the next one,
+ * so the columns only ever grow to the number of riders that actually have results in the stage.
+ * Clearing the results lets go of the columns altogether.
+ * @author Aria Noroozi
+ */
+public class StageResults {
+    //maps each rider with a result to their slot in the columns
+    private SlotAllocator slots = new SlotAllocator();
+    //the columns, each indexed by slot
+    private int[] riderIds = new int[0];
+    private long[] finishTimes = new long[0];
+    private long[][] checkpointTimes = new long[0][];
+    //goes up with every change, so anything worked out from the results can tell when it is out of date
+    private long version = 0;
+
+    //get methods
+    public int size() {return slots.size();}
+    public int getNumberOfCheckpoints() {return checkpointTimes.length;}
+    public boolean hasResult(int riderId) {return slots.slotOf(riderId) >= 0;}
+    public long getVersion() {return version;}
+
+    /**
+     * records a rider's result in the stage
+     * @param riderId the id of the rider
+     * @param finishTime the elapsed time at the finish line, in nanoseconds
+     * @param times the elapsed time at each checkpoint in order of location, in nanoseconds
+    */
+    public void record(int riderId, long finishTime, long[] times) {
+        int slot = record(riderId, finishTime, times.length);
+        for (int i = 0; i < checkpointTimes.length; i++) {
+            checkpointTimes[i][slot] = times[i];
+        }
+    }
+
+    /**
+     * records a rider's finish time and hands back their slot, so the checkpoint times can be written straight
+     * into the columns with setCheckpointTime, without building an array for them first
+     * @param riderId the id of the rider
+     * @param finishTime the elapsed time at the finish line, in nanoseconds
+     * @param checkpointCount the number of checkpoints in the stage
+     * @return the slot the result was given
+    */
+    public int record(int riderId, long finishTime, int checkpointCount) {
+        remove(riderId);
+        //the columns are laid out with the first result, as checkpoints cannot change once results come in
+        if (slots.size() == 0 && checkpointTimes.length != checkpointCount) {
+            checkpointTimes = new long[checkpointCount][riderIds.length];
+        }
+        int slot = slots.allocate(riderId);
+        if (slot == riderIds.length) {
+            grow(Math.max(8, slot * 2));
+        }
+        riderIds[slot] = riderId;
+        finishTimes[slot] = finishTime;
+        version++;
+        return slot;
+    }
+
+    //writes the elapsed time, in nanoseconds, at one checkpoint of a slot handed out by record
+    public void setCheckpointTime(int checkpoint, int slot, long time) {
+        checkpointTimes[checkpoint][slot] = time;
+    }
+
+    /**
+     * removes a rider's result from the stage, freeing their slot
+     * @param riderId the id of the rider
+     * @return true if the rider had a result to remove
+    */
+    public boolean remove(int riderId) {
+        if (slots.free(riderId) < 0) {
+            return false;
+        }
+        version++;
+        return true;
+    }
+
+    /**
+     * gets the elapsed time of a rider at the finish line
+     * @param riderId the id of the rider
+     * @return the time in nanoseconds, or -1 if the rider has no result
+    */
+    public long getFinishTime(int riderId) {
+        int slot = slots.slotOf(riderId);
+        return slot < 0 ? -1 : finishTimes[slot];
+    }
+
+    /**
+     * gets the elapsed times of a rider at each checkpoint
+     * @param riderId the id of the rider
+     * @return the times in nanoseconds in order of location, or null if the rider has no result
+    */
+    public long[] getCheckpointTimes(int riderId) {
+        int slot = slots.slotOf(riderId);
+        if (slot < 0) {
+            return null;
+        }
+        long[] times = new long[checkpointTimes.length];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = checkpointTimes[i][slot];
+        }
+        return times;
+    }
+
+    //methods to scan the columns directly. Only the slots marked by nextSlot hold a result
+    public int nextSlot(int fromSlot) {return slots.nextUsed(fromSlot);}
+    public int getSlotCapacity() {return riderIds.length;}
+    public int getRiderId(int slot) {return riderIds[slot];}
+    public long getFinishTimeAt(int slot) {return finishTimes[slot];}
+    public long getCheckpointTimeAt(int checkpoint, int slot) {return checkpointTimes[checkpoint][slot];}
+
+    //the slot holding a rider's result, or -1 if the rider has no result
+    public int getSlot(int riderId) {return slots.slotOf(riderId);}
+
+    //Called when the stage's results are wiped. The columns are dropped, to be laid out again by the next result
+    public void clear() {
+        slots.clear();
+        riderIds = new int[0];
+        finishTimes = new long[0];
+        checkpointTimes = new long[0][];
+        version++;
+    }
+
+    private void grow(int capacity) {
+        riderIds = Arrays.copyOf(riderIds, capacity);
+        finishTimes = Arrays.copyOf(finishTimes, capacity);
+        for (int i = 0; i < checkpointTimes.length; i++) {
+            checkpointTimes[i] = Arrays.copyOf(checkpointTimes[i], capacity);
+        }
+    }
+}
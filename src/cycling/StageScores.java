@@ -0,0 +1,61 @@
+package cycling;
+
+/**
+ * StageScores class, the points every rider earnt in a stage, at the finish and on its climbs.
+ * A table is built from the stage's results the first time the points are asked for and is never changed afterwards.
+ * The stage hands the same table out until its results change, which it detects through the results' version,
+ * so reading the points is free of side effects and costs nothing more than copying the arrays.
+ * @author Aria Noroozi
+ */
+public class StageScores {
+    //the version of the results the table was built from
+    private final long version;
+    //all three arrays are in the order the riders finished the stage
+    private final int[] rankedRiderIds;
+    private final int[] points;
+    private final int[] mountainPoints;
+
+    private StageScores(long version, int[] rankedRiderIds, int[] points, int[] mountainPoints) {
+        this.version = version;
+        this.rankedRiderIds = rankedRiderIds;
+        this.points = points;
+        this.mountainPoints = mountainPoints;
+    }
+
+    /**
+     * scores a stage from its leaderboard and results
+     * @param stage the stage being scored
+     * @return a table of the stage's points as its results stand
+    */
+    public static StageScores compute(Stage stage) {
+        StageResults results = stage.getResults();
+        int[] rankedRiders = stage.getLeaderboard().getRankedRiderIds();
+
+        //the finish points only depend on the position, everyone outside the scoring positions is left on 0
+        int[] points = new int[rankedRiders.length];
+        int winningPositions = Math.min(points.length, stage.getType().getStageType().length);
+        for (int i = 0; i < winningPositions; i++) {
+            points[i] = stage.getType().getPoints(i);
+        }
+
+        //the climbs are scored per slot of the result columns, then lined up with the ranking
+        int[] slotPoints = ClimbScorer.scoreSlots(results, stage.getCheckpoints());
+        int[] mountainPoints = new int[rankedRiders.length];
+        for (int i = 0; i < rankedRiders.length; i++) {
+            mountainPoints[i] = slotPoints[results.getSlot(rankedRiders[i])];
+        }
+        return new StageScores(results.getVersion(), rankedRiders, points, mountainPoints);
+    }
+
+    //get methods, copies are returned so the table cannot be altered
+    public long getVersion() {return version;}
+    public int[] getRankedRiderIds() {return rankedRiderIds.clone();}
+    public int[] getPoints() {return points.clone();}
+    public int[] getMountainPoints() {return mountainPoints.clone();}
+
+    //used when adding the stages of a race together, without copying the arrays
+    public int size() {return rankedRiderIds.length;}
+    public int getRiderAt(int rank) {return rankedRiderIds[rank];}
+    public int getPointsAt(int rank) {return points[rank];}
+    public int getMountainPointsAt(int rank) {return mountainPoints[rank];}
+}
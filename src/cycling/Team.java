@@ -8,7 +8,7 @@ import java.util.List;
  * While riders are examined and compared individually in the back end,
  * in the context of a bike app, the cyclists must be cast into teams
  * as with any stage race.
- * This class creates teams that have unique team ids,
+ * This class creates teams that have unique team ids, given by the portal,
  * and an initially empty rider list that gets added to.
  * @author Aria Noroozi
  */
@@ -18,35 +18,39 @@ public class Team implements java.io.Serializable {
     private String teamName;
     private String teamDescription;
     private List<Rider> teamRiders = new ArrayList<>();
-
-    //static integer attribute to increment and give each team a unique id
-    private static int i = 0;
+    //copies of the rider list and its ids, rebuilt whenever a rider joins or leaves and shared by every reader
+    private volatile Rider[] riderView = new Rider[0];
+    private volatile int[] riderIds = new int[0];
 
     //get methods
     public int getTeamId() {return teamId;}
     public String getTeamName() {return teamName;}
     public String getTeamDescription() {return teamDescription;}
-    public Rider[] getRiders() {return teamRiders.toArray(new Rider[0]);}
-    public int[] getRiderIds() {
-        int[] idArray = new int[teamRiders.size()];
-        for (int j = 0; j < teamRiders.size(); j++) {
-            idArray[j] = teamRiders.get(j).getRiderId();
-        }
-        return idArray;
-    }
+    //the returned arrays are shared, so they must not be changed by the caller
+    public Rider[] getRiders() {return riderView;}
+    public int[] getRiderIds() {return riderIds;}
 
     //adds a rider to a team.
-    public void addRider(Rider newRider) {teamRiders.add(newRider);}
+    public void addRider(Rider newRider) {teamRiders.add(newRider); publishRiders();}
     //removes a rider
-    public void deleteRider(int index) {teamRiders.set(index, null); teamRiders.remove(index);}
+    public void deleteRider(int index) {teamRiders.set(index, null); teamRiders.remove(index); publishRiders();}
+    public void deleteRider(Rider rider) {teamRiders.remove(rider); publishRiders();}
 
-    //Called when the portal is erased, so that ids can start from 0 again.
-    public static void reset() {i = 0;};
+    //builds new copies of the rider list for readers, replacing the old ones in one step
+    private void publishRiders() {
+        Rider[] view = teamRiders.toArray(new Rider[0]);
+        int[] ids = new int[view.length];
+        for (int j = 0; j < view.length; j++) {
+            ids[j] = view[j].getRiderId();
+        }
+        riderIds = ids;
+        riderView = view;
+    }
 
-    //constructor.
-    public Team(String teamName, String teamDescription) {
+    //constructor, the id comes from the portal's id sequences
+    public Team(int teamId, String teamName, String teamDescription) {
+        this.teamId = teamId;
         this.teamName = teamName;
         this.teamDescription = teamDescription;
-        this.teamId = i++;
     }
 }
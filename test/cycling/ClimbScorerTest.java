@@ -0,0 +1,74 @@
+package cycling;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * ClimbScorerTest class, checking the climbs of a stage are scored as a full sort of the riders would score them.
+ * @author Aria Noroozi
+ */
+class ClimbScorerTest {
+    private static final Checkpoint[] ONE_C2 = {new Checkpoint(0, 0, 10.0, CheckpointType.C2, 5.0, 2.0)};
+
+    @Test
+    void equalTimesGoToTheLowerRiderIdWhateverTheSlot() {
+        StageResults results = new StageResults();
+        //rider 9 is recorded first and gets slot 0, rider 4 gets slot 1, both reaching the climb at the same time
+        results.record(9, 100, new long[] {10});
+        results.record(4, 100, new long[] {10});
+        results.record(7, 100, new long[] {5});
+
+        int[] slotPoints = ClimbScorer.scoreSlots(results, ONE_C2);
+        assertEquals(5, slotPoints[results.getSlot(7)]);
+        assertEquals(3, slotPoints[results.getSlot(4)]);
+        assertEquals(2, slotPoints[results.getSlot(9)]);
+    }
+
+    @Test
+    void equalTimesAreBrokenTheSameWayOnceSlotsAreReused() {
+        StageResults results = new StageResults();
+        for (int riderId = 0; riderId < 6; riderId++) {
+            results.record(riderId, 100, new long[] {10});
+        }
+        //rider 1's slot goes to rider 8, which now sits below riders 2 to 5 in the columns
+        results.remove(1);
+        results.record(8, 100, new long[] {10});
+
+        int[] slotPoints = ClimbScorer.scoreSlots(results, ONE_C2);
+        int[] expected = {5, 3, 2, 1, 0, 0};
+        int[] riderIds = {0, 2, 3, 4, 5, 8};
+        for (int i = 0; i < riderIds.length; i++) {
+            assertEquals(expected[i], slotPoints[results.getSlot(riderIds[i])]);
+        }
+    }
+
+    @Test
+    void fewerRidersThanScoringPlacesAllScoreInOrder() {
+        StageResults results = new StageResults();
+        results.record(0, 100, new long[] {30, 50});
+        results.record(1, 100, new long[] {20, 60});
+        results.record(2, 100, new long[] {10, 40});
+        Checkpoint[] checkpoints = {
+            new Checkpoint(0, 0, 10.0, CheckpointType.HC, 5.0, 2.0),
+            new Checkpoint(1, 0, 20.0, CheckpointType.C1, 5.0, 2.0)
+        };
+
+        int[] slotPoints = ClimbScorer.scoreSlots(results, checkpoints);
+        //HC: riders 2, 1, 0 take 20, 15, 12. C1: riders 2, 0, 1 take 10, 8, 6
+        assertEquals(30, slotPoints[results.getSlot(2)]);
+        assertEquals(21, slotPoints[results.getSlot(1)]);
+        assertEquals(20, slotPoints[results.getSlot(0)]);
+    }
+
+    @Test
+    void sprintsAndEmptyStagesScoreNothing() {
+        StageResults results = new StageResults();
+        assertArrayEquals(new int[0], ClimbScorer.scoreSlots(results, new Checkpoint[0]));
+
+        results.record(0, 100, new long[] {10});
+        Checkpoint[] sprint = {new Checkpoint(0, 0, 10.0, CheckpointType.SPRINT, 0.0, 0.0)};
+        assertEquals(0, ClimbScorer.scoreSlots(results, sprint)[results.getSlot(0)]);
+    }
+}
@@ -0,0 +1,112 @@
+package cycling;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * CyclingPortalImplTest class, checking that removing entities leaves nothing of them behind in the rankings.
+ * @author Aria Noroozi
+ */
+class CyclingPortalImplTest {
+    @TempDir
+    Path directory;
+
+    private CyclingPortalImpl portal;
+    private int raceId;
+    private int stageId;
+    private int keptTeam;
+    private int removedTeam;
+
+    @BeforeEach
+    void registerResults() throws Exception {
+        portal = new CyclingPortalImpl();
+        raceId = portal.createRace("Race", "");
+        stageId = portal.addStageToRace(raceId, "Stage", "", 100, LocalDateTime.of(2024, 7, 1, 12, 0), StageType.FLAT);
+        portal.addCategorizedClimbToStage(stageId, 50.0, CheckpointType.C1, 5.0, 2.0);
+        portal.concludeStagePreparation(stageId);
+        keptTeam = portal.createTeam("Kept", "");
+        removedTeam = portal.createTeam("Removed", "");
+        //riders 0 and 1 are kept, riders 2 and 3 are removed with their team and finished ahead of them
+        portal.createRider(keptTeam, "First", 1990);
+        portal.createRider(keptTeam, "Second", 1990);
+        portal.createRider(removedTeam, "Third", 1990);
+        portal.createRider(removedTeam, "Fourth", 1990);
+        LocalTime start = LocalTime.of(12, 0);
+        for (int riderId = 0; riderId < 4; riderId++) {
+            portal.registerRiderResultsInStage(stageId, riderId, start, start.plusMinutes(50 - riderId),
+                    start.plusMinutes(120 - riderId));
+        }
+    }
+
+    @Test
+    void removingATeamTakesItsRidersOutOfEveryRanking() throws Exception {
+        portal.removeTeam(removedTeam);
+        assertRidersZeroAndOneOnly();
+    }
+
+    @Test
+    void removingATeamLeavesNothingOfItInASavedPortal() throws Exception {
+        portal.removeTeam(removedTeam);
+        String filename = directory.resolve("portal.snap").toString();
+        portal.saveCyclingPortal(filename);
+        portal = new CyclingPortalImpl();
+        portal.loadCyclingPortal(filename);
+        assertRidersZeroAndOneOnly();
+    }
+
+    @Test
+    void aDamagedSnapshotIsRejectedAndLeavesThePortalAsItWas() throws Exception {
+        Path file = directory.resolve("portal.snap");
+        portal.saveCyclingPortal(file.toString());
+        byte[] saved = Files.readAllBytes(file);
+
+        //cut short in the middle of the last stage
+        Files.write(file, Arrays.copyOf(saved, saved.length - 3));
+        assertThrows(StreamCorruptedException.class, () -> portal.loadCyclingPortal(file.toString()));
+
+        //the first race record, after the seven header ints and the race count, claims a byte more than it holds
+        byte[] damaged = saved.clone();
+        ByteBuffer.wrap(damaged).putInt(8 * Integer.BYTES, ByteBuffer.wrap(saved).getInt(8 * Integer.BYTES) + 1);
+        Files.write(file, damaged);
+        assertThrows(StreamCorruptedException.class, () -> portal.loadCyclingPortal(file.toString()));
+
+        assertArrayEquals(new int[] {3, 2, 1, 0}, portal.getRidersRankInStage(stageId));
+    }
+
+    @Test
+    void aMissingCheckpointTimeRecordsNothingAndCanBeRegisteredAgain() throws Exception {
+        int riderId = portal.createRider(keptTeam, "Late", 1990);
+        LocalTime start = LocalTime.of(12, 0);
+        assertThrows(InvalidCheckpointTimesException.class,
+                () -> portal.registerRiderResultsInStage(stageId, riderId, start, null, start.plusMinutes(200)));
+        assertNull(portal.getRiderAdjustedElapsedTimeInStage(stageId, riderId));
+        assertEquals(0, portal.getRiderResultsInStage(stageId, riderId).length);
+
+        portal.registerRiderResultsInStage(stageId, riderId, start, start.plusMinutes(100), start.plusMinutes(200));
+        assertArrayEquals(new int[] {3, 2, 1, 0, riderId}, portal.getRidersRankInStage(stageId));
+    }
+
+    private void assertRidersZeroAndOneOnly() throws Exception {
+        assertArrayEquals(new int[] {1, 0}, portal.getRidersRankInStage(stageId));
+        assertEquals(2, portal.getRankedAdjustedElapsedTimesInStage(stageId).length);
+        assertArrayEquals(new int[] {50, 30}, portal.getRidersPointsInStage(stageId));
+        assertArrayEquals(new int[] {10, 8}, portal.getRidersMountainPointsInStage(stageId));
+        assertArrayEquals(new int[] {1, 0}, portal.getRidersGeneralClassificationRank(raceId));
+        assertArrayEquals(new int[] {1, 0}, portal.getRidersPointClassificationRank(raceId));
+        assertArrayEquals(new int[] {1, 0}, portal.getRidersMountainPointClassificationRank(raceId));
+    }
+}
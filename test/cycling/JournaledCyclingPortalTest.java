@@ -0,0 +1,134 @@
+package cycling;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * JournaledCyclingPortalTest class, checking that a journaled portal comes back the same after being closed or cut short.
+ * @author Aria Noroozi
+ */
+class JournaledCyclingPortalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoveryDropsARecordCutShortAndCarriesOnAfterIt() throws Exception {
+        int teamId;
+        try (JournaledCyclingPortal portal = JournaledCyclingPortal.open(directory.toString())) {
+            teamId = portal.createTeam("Team", "");
+            portal.createRider(teamId, "First", 1990);
+            portal.createRider(teamId, "Second", 1991);
+        }
+        //cuts the last record in half, as a crash in the middle of writing it would
+        Path segment = segmentPath(0);
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+
+        try (JournaledCyclingPortal portal = JournaledCyclingPortal.open(directory.toString())) {
+            assertEquals(1, portal.getTeamRiders(teamId).length);
+            //the damaged tail is cut off, so the next record follows straight on from the last good one
+            assertTrue(Files.size(segment) < size - 5);
+            assertEquals(1, portal.createRider(teamId, "Again", 1992));
+        }
+
+        try (JournaledCyclingPortal portal = JournaledCyclingPortal.open(directory.toString())) {
+            assertArrayEquals(new int[] {0, 1}, portal.getTeamRiders(teamId));
+        }
+    }
+
+    @Test
+    void recoveryReplaysTheSegmentsOnBothSidesOfARotation() throws Exception {
+        int stageId;
+        try (JournaledCyclingPortal portal = JournaledCyclingPortal.open(directory.toString())) {
+            int raceId = portal.createRace("Race", "");
+            stageId = portal.addStageToRace(raceId, "Stage", "", 100, LocalDateTime.of(2024, 7, 1, 12, 0), StageType.FLAT);
+            int teamId = portal.createTeam("Team", "");
+            portal.createRider(teamId, "First", 1990);
+            //a rotation with no snapshot after it, as after a crash while the snapshot was being written
+            portal.getJournal().rotate();
+            portal.createRider(teamId, "Second", 1991);
+            portal.concludeStagePreparation(stageId);
+            portal.registerRiderResultsInStage(stageId, 1, LocalTime.of(12, 0), LocalTime.of(14, 0));
+            portal.registerRiderResultsInStage(stageId, 0, LocalTime.of(12, 0), LocalTime.of(15, 0));
+        }
+        assertTrue(Files.exists(segmentPath(0)));
+        assertTrue(Files.exists(segmentPath(1)));
+
+        try (JournaledCyclingPortal portal = JournaledCyclingPortal.open(directory.toString())) {
+            assertEquals(1, portal.getJournal().getSegment());
+            assertArrayEquals(new int[] {1, 0}, portal.getRidersRankInStage(stageId));
+        }
+    }
+
+    @Test
+    void recoveryLoadsTheSnapshotAndReplaysTheSegmentAfterIt() throws Exception {
+        int stageId;
+        try (JournaledCyclingPortal portal = JournaledCyclingPortal.open(directory.toString())) {
+            int raceId = portal.createRace("Race", "");
+            stageId = portal.addStageToRace(raceId, "Stage", "", 100, LocalDateTime.of(2024, 7, 1, 12, 0), StageType.FLAT);
+            int teamId = portal.createTeam("Team", "");
+            portal.createRider(teamId, "First", 1990);
+            portal.createRider(teamId, "Second", 1991);
+            portal.concludeStagePreparation(stageId);
+            portal.registerRiderResultsInStage(stageId, 0, LocalTime.of(12, 0), LocalTime.of(15, 0));
+            portal.compact().get();
+            portal.registerRiderResultsInStage(stageId, 1, LocalTime.of(12, 0), LocalTime.of(14, 0));
+        }
+        assertTrue(Files.exists(directory.resolve("snapshot-00000001.snap")));
+        assertTrue(Files.notExists(segmentPath(0)));
+
+        try (JournaledCyclingPortal portal = JournaledCyclingPortal.open(directory.toString())) {
+            assertArrayEquals(new int[] {1, 0}, portal.getRidersRankInStage(stageId));
+        }
+    }
+
+    @Test
+    void aChangeTheJournalCannotHoldIsTurnedDownBeforeItIsApplied() throws Exception {
+        int stageId;
+        try (JournaledCyclingPortal portal = JournaledCyclingPortal.open(directory.toString())) {
+            int raceId = portal.createRace("Race", "");
+            stageId = portal.addStageToRace(raceId, "Stage", "", 100, LocalDateTime.of(2024, 7, 1, 12, 0), StageType.FLAT);
+            assertThrows(IllegalArgumentException.class, () -> portal.addCategorizedClimbToStage(stageId, 20.0, null, 5.0, 2.0));
+            assertThrows(IllegalArgumentException.class, () -> portal.addCategorizedClimbToStage(stageId, 20.0, CheckpointType.C1, null, 2.0));
+            assertEquals(0, portal.getStageCheckpoints(stageId).length);
+            //no id was used up by the climbs turned down, so the journal still replays to the same ids
+            assertEquals(0, portal.addCategorizedClimbToStage(stageId, 30.0, CheckpointType.C1, 5.0, 2.0));
+            portal.concludeStagePreparation(stageId);
+            int teamId = portal.createTeam("Team", "");
+            portal.createRider(teamId, "First", 1990);
+            portal.createRider(teamId, "Second", 1991);
+            LocalTime start = LocalTime.of(12, 0);
+            Map<Integer, LocalTime[]> results = new LinkedHashMap<>();
+            results.put(0, new LocalTime[] {start, start.plusMinutes(40), start.plusMinutes(150)});
+            results.put(1, new LocalTime[] {start, start.plusMinutes(30), start.plusMinutes(140)});
+            portal.registerStageResultsBatch(stageId, results);
+        }
+
+        try (JournaledCyclingPortal portal = JournaledCyclingPortal.open(directory.toString())) {
+            assertArrayEquals(new int[] {0}, portal.getStageCheckpoints(stageId));
+            assertArrayEquals(new int[] {1, 0}, portal.getRidersRankInStage(stageId));
+            assertArrayEquals(new int[] {10, 8}, portal.getRidersMountainPointsInStage(stageId));
+        }
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("segment-%08d.log", number));
+    }
+}
@@ -0,0 +1,89 @@
+package cycling;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * MappedPortalArchiveTest class, checking an archive answers the same as the live portal it was saved from.
+ * @author Aria Noroozi
+ */
+class MappedPortalArchiveTest {
+    @TempDir
+    Path directory;
+
+    private CyclingPortalImpl portal;
+    private int stageId;
+    private int riderWithoutResult;
+    private String filename;
+
+    @BeforeEach
+    void saveAPortal() throws Exception {
+        portal = new CyclingPortalImpl();
+        Random random = new Random(7);
+        int teamId = portal.createTeam("Team", "");
+        for (int i = 0; i < 40; i++) {
+            portal.createRider(teamId, "Rider" + i, 1990);
+        }
+        int raceId = portal.createRace("Race", "");
+        stageId = portal.addStageToRace(raceId, "Stage", "", 200, LocalDateTime.of(2024, 7, 1, 9, 0), StageType.HIGH_MOUNTAIN);
+        for (int i = 0; i < 4; i++) {
+            portal.addCategorizedClimbToStage(stageId, 20.0 + i * 40, CheckpointType.values()[i], 5.0, 3.0);
+        }
+        portal.concludeStagePreparation(stageId);
+        //times a few seconds apart, so many riders tie at each climb
+        LocalTime start = LocalTime.of(9, 0);
+        for (int riderId = 0; riderId < 40; riderId++) {
+            LocalTime[] times = new LocalTime[6];
+            times[0] = start;
+            for (int i = 1; i < times.length; i++) {
+                times[i] = start.plusMinutes(i * 30).plusSeconds(random.nextInt(5));
+            }
+            portal.registerRiderResultsInStage(stageId, riderId, times);
+        }
+        //deleted results free slots that are then handed out again
+        portal.deleteRiderResultsInStage(stageId, 3);
+        portal.deleteRiderResultsInStage(stageId, 17);
+        portal.registerRiderResultsInStage(stageId, 3, start, start.plusMinutes(30), start.plusMinutes(60),
+                start.plusMinutes(90), start.plusMinutes(120), start.plusMinutes(150));
+        riderWithoutResult = 17;
+
+        filename = directory.resolve("portal.snap").toString();
+        portal.saveCyclingPortal(filename);
+    }
+
+    @Test
+    void mountainPointsMatchTheLivePortal() throws Exception {
+        try (MappedPortalArchive archive = new MappedPortalArchive(filename)) {
+            assertArrayEquals(portal.getRidersRankInStage(stageId), archive.getRidersRankInStage(stageId));
+            assertArrayEquals(portal.getRidersMountainPointsInStage(stageId), archive.getRidersMountainPointsInStage(stageId));
+        }
+    }
+
+    @Test
+    void aRiderWithoutAResultIsToldApartFromAnUnknownRider() throws Exception {
+        try (MappedPortalArchive archive = new MappedPortalArchive(filename)) {
+            assertEquals(0, archive.getRiderResultsInStage(stageId, riderWithoutResult).length);
+            assertArrayEquals(portal.getRiderResultsInStage(stageId, 3), archive.getRiderResultsInStage(stageId, 3));
+            assertThrows(IDNotRecognisedException.class, () -> archive.getRiderResultsInStage(stageId, 99));
+        }
+    }
+
+    @Test
+    void aClosedArchiveCannotBeQueried() throws Exception {
+        MappedPortalArchive archive = new MappedPortalArchive(filename);
+        archive.close();
+        IllegalStateException closed = assertThrows(IllegalStateException.class, () -> archive.getRidersRankInStage(stageId));
+        assertEquals("archive closed", closed.getMessage());
+        assertThrows(IllegalStateException.class, archive::getRaceIds);
+    }
+}
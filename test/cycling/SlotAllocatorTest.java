@@ -0,0 +1,96 @@
+package cycling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SlotAllocatorTest class, checking slots are reused lowest first and lookups survive deletions in the table.
+ * @author Aria Noroozi
+ */
+class SlotAllocatorTest {
+    @Test
+    void aFreedSlotIsTheNextOneHandedOut() {
+        SlotAllocator slots = new SlotAllocator();
+        for (int id = 100; id < 105; id++) {
+            assertEquals(id - 100, slots.allocate(id));
+        }
+        assertEquals(3, slots.free(103));
+        assertEquals(1, slots.free(101));
+        assertFalse(slots.isUsed(1));
+        assertEquals(5, slots.getSlotLimit());
+
+        //the lowest freed slot goes first, then the next, and only then a new one
+        assertEquals(1, slots.allocate(200));
+        assertEquals(3, slots.allocate(201));
+        assertEquals(5, slots.allocate(202));
+        //allocating an id again gives back its slot rather than a new one
+        assertEquals(1, slots.allocate(200));
+        assertEquals(6, slots.size());
+    }
+
+    @Test
+    void freeingAcrossTheEndOfTheTableKeepsTheOtherIdsReachable() {
+        //ids that all hash to the last entry of the starting table, so the second and third wrap round to its start
+        int[] ids = idsWithHome(15, 3);
+        SlotAllocator slots = new SlotAllocator();
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(i, slots.allocate(ids[i]));
+        }
+
+        //freeing the entry at the end moves the wrapped entries back along their probe path
+        assertEquals(0, slots.free(ids[0]));
+        assertEquals(-1, slots.slotOf(ids[0]));
+        assertEquals(1, slots.slotOf(ids[1]));
+        assertEquals(2, slots.slotOf(ids[2]));
+
+        //freeing the entry that wrapped round leaves the one after it reachable
+        assertEquals(1, slots.free(ids[1]));
+        assertEquals(2, slots.slotOf(ids[2]));
+        assertEquals(-1, slots.free(ids[1]));
+        assertEquals(1, slots.size());
+        assertEquals(0, slots.allocate(ids[0]));
+    }
+
+    @Test
+    void matchesAMapOverRandomAllocationsAndFrees() {
+        SlotAllocator slots = new SlotAllocator();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            int id = random.nextInt(2_000);
+            if (random.nextBoolean()) {
+                int slot = slots.allocate(id);
+                assertEquals(expected.computeIfAbsent(id, key -> slot), slot);
+            }
+            else {
+                Integer slot = expected.remove(id);
+                assertEquals(slot == null ? -1 : slot, slots.free(id));
+            }
+        }
+        assertEquals(expected.size(), slots.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), slots.slotOf(entry.getKey()));
+            assertTrue(slots.isUsed(entry.getValue()));
+        }
+    }
+
+    //the first ids from 0 upwards that SlotAllocator places at the given entry of a table of 16
+    private static int[] idsWithHome(int home, int count) {
+        int[] ids = new int[count];
+        int found = 0;
+        for (int id = 0; found < count; id++) {
+            int h = id * 0x9E3779B9;
+            if (((h ^ (h >>> 16)) & 15) == home) {
+                ids[found++] = id;
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,31 @@
+package cycling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * StageEventBroadcasterTest class, checking subscribers keep getting events whatever other subscribers do.
+ * @author Aria Noroozi
+ */
+class StageEventBroadcasterTest {
+    @Test
+    void closingASubscriptionTwiceLeavesTheOthersSubscribed() throws Exception {
+        StageEventBroadcaster broadcaster = new StageEventBroadcaster();
+        StageEventBroadcaster.Subscription leaving = broadcaster.subscribe(1);
+        StageEventBroadcaster.Subscription staying = broadcaster.subscribe(1);
+        leaving.close();
+        leaving.close();
+
+        broadcaster.resultRegistered(1, 7, 0, 1_000);
+        List<byte[]> events = new ArrayList<>();
+        assertTrue(staying.poll(events, 0, TimeUnit.SECONDS));
+        assertEquals(1, events.size());
+        staying.close();
+    }
+}